@@ -0,0 +1,78 @@
+/*
+ * This file is part of Tatters.
+ * Copyright (c) 2021, warjort and others, All rights reserved.
+ *
+ * Tatters is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tatters is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Tatters.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package tatters.common;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.minecraft.util.math.ChunkPos;
+import tatters.BenchmarkSetup;
+
+// Allocating cells from the counter against the closed form, over the first N grid cells
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SkyblockPosBenchmark {
+
+    @Param({ "1000", "1000000", "10000000" })
+    public int slots;
+
+    @Setup
+    public void setUp() {
+        BenchmarkSetup.setUp();
+    }
+
+    @Benchmark
+    public void allocate(final Blackhole blackhole) {
+        final SkyblockPos skyblockPos = new SkyblockPos();
+        for (int i = 0; i < this.slots; ++i) {
+            blackhole.consume(skyblockPos.getPos(skyblockPos.allocateIndex()));
+        }
+    }
+
+    @Benchmark
+    public void getPosByIndex(final Blackhole blackhole) {
+        final SkyblockPos skyblockPos = new SkyblockPos();
+        for (int i = 0; i < this.slots; ++i) {
+            blackhole.consume(skyblockPos.getPos(i));
+        }
+    }
+
+    @Benchmark
+    public void getIndexOfCell(final Blackhole blackhole) {
+        for (int i = 0; i < this.slots; ++i) {
+            final long cell = SkyblockPos.getCell(i);
+            blackhole.consume(SkyblockPos.getIndex(ChunkPos.getPackedX(cell), ChunkPos.getPackedZ(cell)));
+        }
+    }
+}
\ No newline at end of file
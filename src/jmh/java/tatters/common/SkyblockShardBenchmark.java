@@ -0,0 +1,108 @@
+/*
+ * This file is part of Tatters.
+ * Copyright (c) 2021, warjort and others, All rights reserved.
+ *
+ * Tatters is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tatters is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Tatters.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package tatters.common;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.minecraft.nbt.CompoundTag;
+import tatters.BenchmarkSetup;
+
+// Saving and loading the skyblock records, which is all of the Skyblocks data apart from a few grid counters
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4G")
+public class SkyblockShardBenchmark {
+
+    private static final int SHARDS = 64;
+
+    @Param({ "1000", "100000", "1000000" })
+    public int islands;
+
+    private SkyblockShard[] shards;
+
+    private CompoundTag[] tags;
+
+    @Setup
+    public void setUp() {
+        BenchmarkSetup.setUp();
+        final Random random = new Random(0L);
+        final SkyblockPos skyblockPos = new SkyblockPos();
+        this.shards = createShards();
+        for (int i = 0; i < this.islands; ++i) {
+            final UUID uuid = new UUID(random.nextLong(), random.nextLong());
+            final Skyblock skyblock = new Skyblock(null, uuid, "player" + i, skyblockPos.getPos(i));
+            this.shards[SkyblockShard.getShard(uuid, SHARDS)].put(skyblock);
+        }
+        this.tags = toTag();
+    }
+
+    private static SkyblockShard[] createShards() {
+        final SkyblockShard[] result = new SkyblockShard[SHARDS];
+        for (int i = 0; i < SHARDS; ++i) {
+            result[i] = new SkyblockShard(null, i);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public CompoundTag[] toTag() {
+        final CompoundTag[] result = new CompoundTag[SHARDS];
+        for (int i = 0; i < SHARDS; ++i) {
+            result[i] = this.shards[i].toTag(new CompoundTag());
+        }
+        return result;
+    }
+
+    // What a world load does, the skyblocks are only created when they are used
+    @Benchmark
+    public void fromTag(final Blackhole blackhole) {
+        final SkyblockShard[] shards = createShards();
+        for (int i = 0; i < SHARDS; ++i) {
+            shards[i].fromTag(this.tags[i]);
+            shards[i].forEachSpawn((uuid, spawn) -> blackhole.consume(spawn));
+        }
+    }
+
+    // Loading and then using every skyblock
+    @Benchmark
+    public void fromTagAndList(final Blackhole blackhole) {
+        final SkyblockShard[] shards = createShards();
+        for (int i = 0; i < SHARDS; ++i) {
+            shards[i].fromTag(this.tags[i]);
+            blackhole.consume(shards[i].list());
+        }
+    }
+}
\ No newline at end of file
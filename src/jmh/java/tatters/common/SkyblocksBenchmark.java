@@ -0,0 +1,97 @@
+/*
+ * This file is part of Tatters.
+ * Copyright (c) 2021, warjort and others, All rights reserved.
+ *
+ * Tatters is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tatters is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Tatters.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package tatters.common;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.minecraft.util.math.BlockPos;
+import tatters.BenchmarkSetup;
+
+// Finding the island at a position, the owner lookup used by the hot paths against looking up the skyblock.
+// Run with -PjmhArgs="SkyblocksBenchmark -prof gc", gc.alloc.rate.norm should be about 0 for getOwnerAt.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4G")
+public class SkyblocksBenchmark {
+
+    private static final int SHARDS = 64;
+
+    // Positions looked up per invocation
+    private static final int LOOKUPS = 1024;
+
+    @Param({ "1000", "100000" })
+    public int islands;
+
+    private Skyblocks skyblocks;
+
+    private int[] blockX;
+
+    private int[] blockZ;
+
+    @Setup
+    public void setUp() {
+        BenchmarkSetup.setUp();
+        final Random random = new Random(0L);
+        this.skyblocks = new Skyblocks(SHARDS);
+        final SkyblockPos skyblockPos = this.skyblocks.getSkyblockPos();
+        for (int i = 0; i < this.islands; ++i) {
+            final UUID uuid = new UUID(random.nextLong(), random.nextLong());
+            this.skyblocks.register(new Skyblock(this.skyblocks, uuid, "player" + i, skyblockPos.getPos(i)));
+        }
+        // Somewhere on a random island, like a player or chunk loader would be
+        this.blockX = new int[LOOKUPS];
+        this.blockZ = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; ++i) {
+            final BlockPos pos = skyblockPos.getPos(random.nextInt(this.islands));
+            this.blockX[i] = pos.getX() + random.nextInt(64) - 32;
+            this.blockZ[i] = pos.getZ() + random.nextInt(64) - 32;
+        }
+    }
+
+    @Benchmark
+    public void getOwnerAt(final Blackhole blackhole) {
+        for (int i = 0; i < LOOKUPS; ++i) {
+            blackhole.consume(this.skyblocks.getOwnerAt(this.blockX[i], this.blockZ[i]));
+        }
+    }
+
+    @Benchmark
+    public void getSkyblockAt(final Blackhole blackhole) {
+        for (int i = 0; i < LOOKUPS; ++i) {
+            blackhole.consume(this.skyblocks.getSkyblockAt(this.blockX[i], this.blockZ[i]));
+        }
+    }
+}
\ No newline at end of file
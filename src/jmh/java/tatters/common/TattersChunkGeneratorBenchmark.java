@@ -0,0 +1,85 @@
+/*
+ * This file is part of Tatters.
+ * Copyright (c) 2021, warjort and others, All rights reserved.
+ *
+ * Tatters is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tatters is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Tatters.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package tatters.common;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.registry.BuiltinRegistries;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.chunk.ProtoChunk;
+import net.minecraft.world.chunk.UpgradeData;
+import net.minecraft.world.gen.chunk.ChunkGenerator;
+import net.minecraft.world.gen.chunk.FlatChunkGenerator;
+import net.minecraft.world.gen.chunk.FlatChunkGeneratorConfig;
+import net.minecraft.world.gen.chunk.StructuresConfig;
+import tatters.BenchmarkSetup;
+
+// Chunks per second from the void generator against the flat generator it replaced, with the same empty config.
+// Only the stages that do not need a world are run: biomes, noise and the heightmaps.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TattersChunkGeneratorBenchmark {
+
+    private static final EnumSet<Heightmap.Type> HEIGHTMAPS = EnumSet.of(Heightmap.Type.MOTION_BLOCKING,
+            Heightmap.Type.MOTION_BLOCKING_NO_LEAVES, Heightmap.Type.OCEAN_FLOOR, Heightmap.Type.WORLD_SURFACE);
+
+    @Param({ "tatters", "flat" })
+    public String generator;
+
+    private ChunkGenerator chunkGenerator;
+
+    private int next = 0;
+
+    @Setup
+    public void setUp() {
+        BenchmarkSetup.setUp();
+        final StructuresConfig structuresConfig = new StructuresConfig(Optional.empty(), Collections.emptyMap());
+        final FlatChunkGeneratorConfig config = new FlatChunkGeneratorConfig(structuresConfig, BuiltinRegistries.BIOME);
+        this.chunkGenerator = "flat".equals(this.generator) ? new FlatChunkGenerator(config) : new TattersChunkGenerator(config);
+    }
+
+    @Benchmark
+    public ProtoChunk generate() {
+        final int index = this.next++;
+        final ProtoChunk chunk = new ProtoChunk(new ChunkPos(index & 1023, index >> 10), UpgradeData.NO_UPGRADE_DATA);
+        this.chunkGenerator.populateBiomes(BuiltinRegistries.BIOME, chunk);
+        this.chunkGenerator.populateNoise(null, null, chunk);
+        Heightmap.populateHeightmaps(chunk, HEIGHTMAPS);
+        return chunk;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,74 @@
+/*
+ * This file is part of Tatters.
+ * Copyright (c) 2021, warjort and others, All rights reserved.
+ *
+ * Tatters is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tatters is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Tatters.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package tatters.config;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+// Skyblock configs of different sizes for the benchmarks
+class BenchmarkTemplates {
+
+    static final String SMALL = "small";
+
+    static final String LARGE = "large";
+
+    static SkyblockConfig create(final String size) {
+        if (SMALL.equals(size))
+            return SkyblockConfig.getSkyblockConfig("default.json");
+        if (LARGE.equals(size))
+            return createLarge(32, 64);
+        throw new IllegalArgumentException("Unknown size: " + size);
+    }
+
+    // A solid block of stone and dirt with some chests, about 130k blocks
+    static SkyblockConfig createLarge(final int height, final int width) {
+        final SkyblockConfig result = new SkyblockConfig();
+        result.name = "large";
+        result.mapping.put('s', definition("minecraft:stone", null));
+        result.mapping.put('d', definition("minecraft:dirt", null));
+        result.mapping.put('g', definition("minecraft:grass_block", null));
+        result.mapping.put('c', definition("minecraft:chest",
+                "{Items:[{Slot:0b,id:\"minecraft:lava_bucket\",Count:1b},{Slot:1b,id:\"minecraft:ice\",Count:2b}]}"));
+        final List<List<String>> layers = Lists.newArrayList();
+        for (int y = 0; y < height; ++y) {
+            final List<String> layer = Lists.newArrayList();
+            for (int x = 0; x < width; ++x) {
+                final StringBuilder row = new StringBuilder(width);
+                for (int z = 0; z < width; ++z) {
+                    if (y == height - 1) {
+                        row.append((x * 31 + z) % 97 == 0 ? 'c' : 'g');
+                    } else {
+                        row.append(y < height / 2 ? 's' : 'd');
+                    }
+                }
+                layer.add(row.toString());
+            }
+            layers.add(layer);
+        }
+        result.layers = layers;
+        return result;
+    }
+
+    private static SkyblockBlockDefinition definition(final String block, final String nbt) {
+        final SkyblockBlockDefinition result = new SkyblockBlockDefinition();
+        result.block = block;
+        result.nbt = nbt;
+        return result;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,75 @@
+/*
+ * This file is part of Tatters.
+ * Copyright (c) 2021, warjort and others, All rights reserved.
+ *
+ * Tatters is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tatters is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Tatters.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package tatters.config;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tatters.BenchmarkSetup;
+
+// Reading a skyblock file, from the json text to a compiled template
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SkyblockConfigBenchmark {
+
+    @Param({ BenchmarkTemplates.SMALL, BenchmarkTemplates.LARGE })
+    public String size;
+
+    private String json;
+
+    private SkyblockConfig validated;
+
+    @Setup
+    public void setUp() {
+        BenchmarkSetup.setUp();
+        this.json = Config.GSON.toJson(BenchmarkTemplates.create(this.size));
+        this.validated = parseAndValidate();
+    }
+
+    @Benchmark
+    public SkyblockConfig parse() {
+        return Config.GSON.fromJson(this.json, SkyblockConfig.class);
+    }
+
+    @Benchmark
+    public SkyblockConfig parseAndValidate() {
+        final SkyblockConfig result = Config.GSON.fromJson(this.json, SkyblockConfig.class);
+        result.validate();
+        return result;
+    }
+
+    @Benchmark
+    public SkyblockTemplate compile() {
+        return this.validated.compile();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,88 @@
+/*
+ * This file is part of Tatters.
+ * Copyright (c) 2021, warjort and others, All rights reserved.
+ *
+ * Tatters is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tatters is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Tatters.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package tatters.config;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.chunk.ProtoChunk;
+import net.minecraft.world.chunk.UpgradeData;
+import tatters.BenchmarkSetup;
+
+// The section writes of bulk placement against the per block path, into proto chunks standing in for the world.
+// The chunks are reused so after the first placement this measures overwriting existing sections.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SkyblockTemplateBenchmark {
+
+    private static final BlockPos ORIGIN = new BlockPos(8, 80, 8);
+
+    @Param({ BenchmarkTemplates.SMALL, BenchmarkTemplates.LARGE })
+    public String size;
+
+    private SkyblockTemplate template;
+
+    private final Long2ObjectMap<ProtoChunk> chunks = new Long2ObjectOpenHashMap<>();
+
+    @Setup
+    public void setUp() {
+        BenchmarkSetup.setUp();
+        final SkyblockConfig config = BenchmarkTemplates.create(this.size);
+        config.validate();
+        this.template = config.compile();
+    }
+
+    @Benchmark
+    public IntArrayList writeSections() {
+        return this.template.writeSections(ORIGIN, 0, this.template.size(), this::getChunk, null);
+    }
+
+    @Benchmark
+    public void setBlockStates() {
+        this.template.setBlockStates(ORIGIN, 0, this.template.size(), this::getChunk);
+    }
+
+    private ProtoChunk getChunk(final long chunkKey) {
+        ProtoChunk chunk = this.chunks.get(chunkKey);
+        if (chunk == null) {
+            chunk = new ProtoChunk(new ChunkPos(chunkKey), UpgradeData.NO_UPGRADE_DATA);
+            this.chunks.put(chunkKey, chunk);
+        }
+        return chunk;
+    }
+}
\ No newline at end of file
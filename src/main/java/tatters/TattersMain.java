@@ -25,7 +25,7 @@ import net.fabricmc.loader.api.FabricLoader;
 import net.fabricmc.loader.api.ModContainer;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.world.World;
-import tatters.common.TattersChunkGenerator;
+import tatters.common.TattersContext;
 
 public class TattersMain implements ModInitializer {
 
@@ -35,9 +35,7 @@ public class TattersMain implements ModInitializer {
     public static boolean isTattersWorld(final World world) {
         if (world instanceof ServerWorld == false)
             return false;
-        final ServerWorld serverWorld = (ServerWorld) world;
-        return serverWorld.getChunkManager().getChunkGenerator() instanceof TattersChunkGenerator 
-                && world.getRegistryKey().equals(World.OVERWORLD);
+        return TattersContext.get((ServerWorld) world).isTattersWorld();
     }
 
     public static ModContainer getModContainer() {
@@ -23,8 +23,13 @@ import java.util.Optional;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.minecraft.client.world.GeneratorType;
+import net.minecraft.util.registry.DynamicRegistryManager;
 import net.minecraft.util.registry.Registry;
+import net.minecraft.util.registry.SimpleRegistry;
 import net.minecraft.world.biome.Biome;
+import net.minecraft.world.dimension.DimensionOptions;
+import net.minecraft.world.dimension.DimensionType;
+import net.minecraft.world.gen.GeneratorOptions;
 import net.minecraft.world.gen.chunk.ChunkGenerator;
 import net.minecraft.world.gen.chunk.ChunkGeneratorSettings;
 import net.minecraft.world.gen.chunk.FlatChunkGeneratorConfig;
@@ -39,6 +44,18 @@ public class TattersGeneratorType extends GeneratorType {
         super(TattersMain.MOD_ID);
     }
 
+    // Same as the default but with the void nether and end when they are enabled
+    @Override
+    public GeneratorOptions createDefaultOptions(final DynamicRegistryManager.Impl registryManager, final long seed,
+            final boolean generateStructures, final boolean bonusChest) {
+        final Registry<Biome> biomeRegistry = registryManager.get(Registry.BIOME_KEY);
+        final Registry<DimensionType> dimensionTypes = registryManager.get(Registry.DIMENSION_TYPE_KEY);
+        final Registry<ChunkGeneratorSettings> noiseSettings = registryManager.get(Registry.NOISE_SETTINGS_WORLDGEN);
+        final SimpleRegistry<DimensionOptions> dimensions = TattersChunkGenerator.createDefaultDimensionOptions(dimensionTypes, biomeRegistry, noiseSettings, seed);
+        return new GeneratorOptions(seed, generateStructures, bonusChest,
+                GeneratorOptions.method_28608(dimensionTypes, dimensions, getChunkGenerator(biomeRegistry, noiseSettings, seed)));
+    }
+
     @Override
     protected ChunkGenerator getChunkGenerator(final Registry<Biome> biomeRegistry,
             final Registry<ChunkGeneratorSettings> chunkGeneratorSettingsRegistry, final long seed) {
@@ -19,21 +19,23 @@ package tatters.common;
 
 import static tatters.TattersMain.log;
 
-import java.util.List;
-import java.util.Map;
+import java.util.Comparator;
 import java.util.UUID;
 
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.server.network.ServerPlayerEntity;
-import net.minecraft.server.world.ServerWorld;
+import net.minecraft.server.world.ChunkTicketType;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.math.BlockPos.Mutable;
-import net.minecraft.util.math.Direction;
-import tatters.config.SkyblockBlockDefinition;
-import tatters.config.SkyblockConfig;
+import net.minecraft.util.math.ChunkPos;
+import tatters.config.SkyblockTemplate;
+import tatters.config.TattersConfig;
 
 public class Skyblock {
 
+    // Held while a member is online, see SkyblockTickets
+    public static final ChunkTicketType<ChunkPos> TICKET = ChunkTicketType.create("tatters_island",
+            Comparator.comparingLong(ChunkPos::toLong));
+
     private final Skyblocks skyblocks;
     
     private final UUID uuid;
@@ -53,6 +55,12 @@ public class Skyblock {
         this.name = name;
     }
 
+    // A skyblock that has already been placed
+    Skyblock(final Skyblocks skyblocks, final UUID uuid, final String name, final BlockPos spawnPos) {
+        this(skyblocks, uuid, name);
+        this.spawnPos = spawnPos;
+    }
+
     public UUID getUUID() {
         return this.uuid;
     }
@@ -78,55 +86,48 @@ public class Skyblock {
         return tag;
     }
 
-    public boolean teleport(final ServerPlayerEntity player) {
-        if (!player.getServerWorld().equals(this.skyblocks.getWorld()))
-            return false;
-
-        if (player.hasVehicle()) {
-            player.stopRiding();
-        }
-        player.requestTeleport(this.spawnPos.getX() + 0.5d, this.spawnPos.getY(), this.spawnPos.getZ() + 0.5d);
-        return true;
+    // The player is moved once the chunks around the spawn are loaded, including from other worlds
+    public void teleport(final ServerPlayerEntity player) {
+        this.skyblocks.teleport(this, player);
     }
 
     public void setPlayerSpawn(final ServerPlayerEntity player) {
         player.setSpawnPoint(this.skyblocks.getWorld().getRegistryKey(), getSpawnPos(), 0.0F, true, true);
     }
 
-    public void create(final SkyblockConfig config) {
+    // Keeps the chunks within the radius of the spawn loaded
+    void addTicket(final int radius) {
+        final ChunkPos chunkPos = new ChunkPos(this.spawnPos);
+        this.skyblocks.getWorld().getChunkManager().addTicket(TICKET, chunkPos, radius, chunkPos);
+    }
+
+    void removeTicket(final int radius) {
+        final ChunkPos chunkPos = new ChunkPos(this.spawnPos);
+        this.skyblocks.getWorld().getChunkManager().removeTicket(TICKET, chunkPos, radius, chunkPos);
+    }
+
+    Skyblocks getSkyblocks() {
+        return this.skyblocks;
+    }
+
+    // Reserves a grid position and works out the spawn, the blocks are placed separately.
+    // Safe from any thread, the skyblock is not visible to anything else yet.
+    BlockPos allocate(final SkyblockTemplate template) {
+        final BlockPos origin = this.skyblocks.allocate();
+        this.spawnPos = template.getSpawnPos(origin);
+        return origin;
+    }
+
+    public void create(final SkyblockTemplate template) {
+        place(template, allocate(template));
+    }
+
+    void place(final SkyblockTemplate template, final BlockPos origin) {
         try {
-            final SkyblockPos skyblockPos = this.skyblocks.getSkyblockPos();
-            final Mutable startPos = skyblockPos.getPos().mutableCopy();
-            skyblockPos.nextPos();
-            this.skyblocks.markDirty();
-
-            final ServerWorld world = this.skyblocks.getWorld();
-            final List<List<String>> layers = config.layers;
-            final Map<Character, SkyblockBlockDefinition> mapping = config.mapping;
-            final Mutable layerPos = startPos.mutableCopy();
-            for (List<String> layer : layers) {
-                final Mutable rowPos = layerPos.east(layer.size()/2).mutableCopy(); 
-                for (String row : layer) {
-                    final Mutable columnPos = rowPos.north(row.length()/2).mutableCopy();
-                    row.chars().forEach(c -> {
-                        final Character key = (char) c;
-                        final SkyblockBlockDefinition definition = mapping.getOrDefault(key, SkyblockBlockDefinition.AIR);
-                        definition.placeBlock(world, columnPos);
-                        if (c == '!') {
-                            if (this.spawnPos != null) {
-                                log.warn("Duplicate spawn points defined for " + config.name);
-                            } else {
-                                this.spawnPos = columnPos.toImmutable();
-                            }
-                        }
-                        columnPos.move(Direction.SOUTH);
-                    });
-                    rowPos.move(Direction.WEST);
-                }
-                layerPos.move(Direction.UP);
-            }
-            if (this.spawnPos == null) {
-                this.spawnPos = startPos.up(layers.size()).toImmutable();
+            if (TattersConfig.getConfig().bulkPlacement) {
+                template.placeBulk(this.skyblocks.getWorld(), origin, 0, template.size());
+            } else {
+                template.place(this.skyblocks.getWorld(), origin);
             }
         }
         catch (RuntimeException e) {
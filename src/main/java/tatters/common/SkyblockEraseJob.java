@@ -0,0 +1,342 @@
+/*
+ * This file is part of Tatters.
+ * Copyright (c) 2021, warjort and others, All rights reserved.
+ *
+ * Tatters is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tatters is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Tatters.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package tatters.common;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.google.common.collect.Lists;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.block.Blocks;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.network.packet.s2c.play.ChunkDataS2CPacket;
+import net.minecraft.network.packet.s2c.play.LightUpdateS2CPacket;
+import net.minecraft.server.world.ChunkTicketType;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Util;
+import net.minecraft.util.WorldSavePath;
+import net.minecraft.util.collection.TypeFilterableList;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.LightType;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkNibbleArray;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.ChunkStatus;
+import net.minecraft.world.chunk.WorldChunk;
+import net.minecraft.world.dimension.DimensionType;
+import net.minecraft.world.chunk.light.LightingProvider;
+import net.minecraft.world.poi.PointOfInterest;
+import net.minecraft.world.poi.PointOfInterestStorage;
+import tatters.config.TattersConfig;
+
+// Wipes the chunks of an abandoned skyblock's grid cell, a few chunks per tick. Only chunks that are loaded or
+// saved are erased, the saved ones are found from the region file headers and loaded with a ticket, so the
+// server thread never waits for the disk.
+public class SkyblockEraseJob {
+
+    public static final ChunkTicketType<ChunkPos> TICKET = ChunkTicketType.create("tatters_erase",
+            Comparator.comparingLong(ChunkPos::toLong));
+
+    // Saved chunks waiting to be loaded at the same time
+    private static final int MAX_LOADING = 16;
+
+    private static final EnumSet<Heightmap.Type> HEIGHTMAPS = EnumSet.of(Heightmap.Type.MOTION_BLOCKING,
+            Heightmap.Type.MOTION_BLOCKING_NO_LEAVES, Heightmap.Type.OCEAN_FLOOR, Heightmap.Type.WORLD_SURFACE);
+
+    private final Skyblocks skyblocks;
+
+    private final int index;
+
+    // The blocks of the grid cell
+    private final int minX;
+    private final int maxX;
+    private final int minZ;
+    private final int maxZ;
+
+    // The chunks to erase, limited to the grid cell
+    private final int minChunkX;
+    private final int minChunkZ;
+    private final int width;
+    private final int depth;
+
+    private int cursor = 0;
+
+    // The chunks of the cell in the region files, read off the server thread the first time the job runs
+    private CompletableFuture<LongSet> saved = null;
+
+    // Packed positions of chunks holding a ticket until they are loaded and erased
+    private final LongList loading = new LongArrayList();
+
+    SkyblockEraseJob(final Skyblocks skyblocks, final int index) {
+        this.skyblocks = skyblocks;
+        this.index = index;
+        final SkyblockPos skyblockPos = skyblocks.getSkyblockPos();
+        final long cell = SkyblockPos.getCell(index);
+        this.minX = skyblockPos.getCellStart(ChunkPos.getPackedX(cell));
+        this.minZ = skyblockPos.getCellStart(ChunkPos.getPackedZ(cell));
+        this.maxX = this.minX + skyblockPos.getSpacing() - 1;
+        this.maxZ = this.minZ + skyblockPos.getSpacing() - 1;
+
+        int minChunkX = this.minX >> 4;
+        int maxChunkX = this.maxX >> 4;
+        int minChunkZ = this.minZ >> 4;
+        int maxChunkZ = this.maxZ >> 4;
+        final int radius = TattersConfig.getConfig().eraseChunkRadius;
+        if (radius >= 0) {
+            final ChunkPos centre = new ChunkPos(skyblockPos.getPos(index));
+            minChunkX = Math.max(minChunkX, centre.x - radius);
+            maxChunkX = Math.min(maxChunkX, centre.x + radius);
+            minChunkZ = Math.max(minChunkZ, centre.z - radius);
+            maxChunkZ = Math.min(maxChunkZ, centre.z + radius);
+        }
+        this.minChunkX = minChunkX;
+        this.minChunkZ = minChunkZ;
+        this.width = maxChunkX - minChunkX + 1;
+        this.depth = maxChunkZ - minChunkZ + 1;
+    }
+
+    // The spiral index of the grid cell
+    public int getIndex() {
+        return this.index;
+    }
+
+    // Returns true when every chunk has been erased, chunks that do not exist are skipped without using the budget
+    boolean run(int chunks) {
+        final ServerWorld world = this.skyblocks.getWorld();
+        if (this.saved == null) {
+            this.saved = findSavedChunks(world);
+        }
+        if (!this.saved.isDone())
+            return false;
+        final LongSet saved = this.saved.join();
+
+        final LongIterator iterator = this.loading.iterator();
+        while (chunks > 0 && iterator.hasNext()) {
+            final long chunkKey = iterator.nextLong();
+            final WorldChunk chunk = getLoadedChunk(world, ChunkPos.getPackedX(chunkKey), ChunkPos.getPackedZ(chunkKey));
+            if (chunk == null)
+                continue;
+            eraseChunk(world, chunk);
+            removeTicket(world, chunkKey);
+            iterator.remove();
+            --chunks;
+        }
+
+        final int size = this.width * this.depth;
+        while (chunks > 0 && this.cursor < size && this.loading.size() < MAX_LOADING) {
+            final int chunkX = this.minChunkX + this.cursor % this.width;
+            final int chunkZ = this.minChunkZ + this.cursor / this.width;
+            ++this.cursor;
+            final WorldChunk chunk = getLoadedChunk(world, chunkX, chunkZ);
+            if (chunk != null) {
+                eraseChunk(world, chunk);
+                --chunks;
+            } else if (saved.contains(ChunkPos.toLong(chunkX, chunkZ))) {
+                final ChunkPos chunkPos = new ChunkPos(chunkX, chunkZ);
+                world.getChunkManager().addTicket(TICKET, chunkPos, 0, chunkPos);
+                this.loading.add(chunkPos.toLong());
+            }
+        }
+        return this.cursor >= size && this.loading.isEmpty();
+    }
+
+    // Lets the chunks still waiting to load go, e.g. when the job failed
+    void cancel() {
+        final ServerWorld world = this.skyblocks.getWorld();
+        for (int i = 0; i < this.loading.size(); ++i) {
+            removeTicket(world, this.loading.getLong(i));
+        }
+        this.loading.clear();
+    }
+
+    private static void removeTicket(final ServerWorld world, final long chunkKey) {
+        final ChunkPos chunkPos = new ChunkPos(chunkKey);
+        world.getChunkManager().removeTicket(TICKET, chunkPos, 0, chunkPos);
+    }
+
+    // Null unless the chunk is already loaded, this never loads or generates it
+    private static WorldChunk getLoadedChunk(final ServerWorld world, final int chunkX, final int chunkZ) {
+        final Chunk chunk = world.getChunkManager().getChunk(chunkX, chunkZ, ChunkStatus.FULL, false);
+        return chunk instanceof WorldChunk ? (WorldChunk) chunk : null;
+    }
+
+    // A chunk has been saved when it has a location in its region file's header. Chunks only in the
+    // storage's write queue are missed, they were unloaded moments ago so that is unlikely for an abandoned cell.
+    private CompletableFuture<LongSet> findSavedChunks(final ServerWorld world) {
+        final File regions = new File(DimensionType.getSaveDirectory(world.getRegistryKey(),
+                world.getServer().getSavePath(WorldSavePath.ROOT).toFile()), "region");
+        final int minChunkX = this.minChunkX;
+        final int minChunkZ = this.minChunkZ;
+        final int maxChunkX = this.minChunkX + this.width - 1;
+        final int maxChunkZ = this.minChunkZ + this.depth - 1;
+        return CompletableFuture.supplyAsync(() -> {
+            final LongSet result = new LongOpenHashSet();
+            final byte[] header = new byte[4096];
+            for (int regionX = minChunkX >> 5; regionX <= maxChunkX >> 5; ++regionX) {
+                for (int regionZ = minChunkZ >> 5; regionZ <= maxChunkZ >> 5; ++regionZ) {
+                    final File file = new File(regions, "r." + regionX + "." + regionZ + ".mca");
+                    if (!file.isFile())
+                        continue;
+                    try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+                        input.readFully(header);
+                    } catch (EOFException e) {
+                        // Created but nothing written yet
+                        continue;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Error reading: " + file, e);
+                    }
+                    final IntBuffer locations = ByteBuffer.wrap(header).asIntBuffer();
+                    for (int i = 0; i < 1024; ++i) {
+                        if (locations.get(i) == 0)
+                            continue;
+                        final int chunkX = (regionX << 5) + (i & 31);
+                        final int chunkZ = (regionZ << 5) + (i >> 5);
+                        if (chunkX >= minChunkX && chunkX <= maxChunkX && chunkZ >= minChunkZ && chunkZ <= maxChunkZ) {
+                            result.add(ChunkPos.toLong(chunkX, chunkZ));
+                        }
+                    }
+                }
+            }
+            return result;
+        }, Util.getMainWorkerExecutor());
+    }
+
+    private void eraseChunk(final ServerWorld world, final WorldChunk chunk) {
+        final ChunkPos chunkPos = chunk.getPos();
+        final int chunkX = chunkPos.x;
+        final int chunkZ = chunkPos.z;
+        if (chunkPos.getStartX() < this.minX || chunkPos.getEndX() > this.maxX || chunkPos.getStartZ() < this.minZ
+                || chunkPos.getEndZ() > this.maxZ) {
+            eraseColumns(world, chunk);
+            return;
+        }
+
+        final List<BlockPos> blockEntities = Lists.newArrayList(chunk.getBlockEntities().keySet());
+        for (BlockPos pos : blockEntities) {
+            world.removeBlockEntity(pos);
+        }
+        for (TypeFilterableList<Entity> section : chunk.getEntitySectionArray()) {
+            for (Entity entity : Lists.newArrayList(section)) {
+                if (isRemovable(entity)) {
+                    entity.remove();
+                }
+            }
+        }
+        final PointOfInterestStorage pointsOfInterest = world.getPointOfInterestStorage();
+        final List<BlockPos> points = Lists.newArrayList();
+        pointsOfInterest.getInChunk(type -> true, chunkPos, PointOfInterestStorage.OccupationStatus.ANY)
+                .map(PointOfInterest::getPos).forEach(points::add);
+        points.forEach(pointsOfInterest::remove);
+
+        // Drop whole sections, the chunk ends up as empty as a freshly generated void chunk
+        final LightingProvider lighting = world.getChunkManager().getLightingProvider();
+        final ChunkSection[] sections = chunk.getSectionArray();
+        final byte[] fullSky = new byte[2048];
+        Arrays.fill(fullSky, (byte) 0xFF);
+        for (int y = 0; y < sections.length; ++y) {
+            final ChunkSectionPos sectionPos = ChunkSectionPos.from(chunkX, y, chunkZ);
+            if (sections[y] != WorldChunk.EMPTY_SECTION) {
+                sections[y] = WorldChunk.EMPTY_SECTION;
+                lighting.setSectionStatus(sectionPos, true);
+            }
+            lighting.queueData(LightType.BLOCK, sectionPos, null, true);
+            lighting.queueData(LightType.SKY, sectionPos, new ChunkNibbleArray(fullSky.clone()), true);
+        }
+        Heightmap.populateHeightmaps(chunk, HEIGHTMAPS);
+        chunk.setShouldSave(true);
+
+        final ChunkDataS2CPacket packet = new ChunkDataS2CPacket(chunk, 65535);
+        world.getChunkManager().threadedAnvilChunkStorage.getPlayersWatchingChunk(chunkPos, false)
+                .forEach(player -> player.networkHandler.sendPacket(packet));
+        // The chunk data does not carry the light, send it like a chunk load does once the new light has been applied
+        ((TattersLighting) lighting).tatters_whenLightUpdated(chunkX, chunkZ).thenRunAsync(() -> {
+            final LightUpdateS2CPacket lightPacket = new LightUpdateS2CPacket(chunkPos, lighting, true);
+            world.getChunkManager().threadedAnvilChunkStorage.getPlayersWatchingChunk(chunkPos, false)
+                    .forEach(player -> player.networkHandler.sendPacket(lightPacket));
+        }, world.getServer());
+    }
+
+    // A chunk on the edge of the cell is shared with the neighbouring cell, only the blocks inside this cell are removed
+    private void eraseColumns(final ServerWorld world, final WorldChunk chunk) {
+        final List<BlockPos> blockEntities = Lists.newArrayList(chunk.getBlockEntities().keySet());
+        for (BlockPos pos : blockEntities) {
+            if (isInside(pos)) {
+                // Removed first so containers do not spill their items when the block goes
+                world.removeBlockEntity(pos);
+            }
+        }
+        for (TypeFilterableList<Entity> section : chunk.getEntitySectionArray()) {
+            for (Entity entity : Lists.newArrayList(section)) {
+                if (isRemovable(entity) && isInside(entity.getBlockPos())) {
+                    entity.remove();
+                }
+            }
+        }
+
+        final ChunkPos chunkPos = chunk.getPos();
+        final int startX = Math.max(this.minX, chunkPos.getStartX());
+        final int endX = Math.min(this.maxX, chunkPos.getEndX());
+        final int startZ = Math.max(this.minZ, chunkPos.getStartZ());
+        final int endZ = Math.min(this.maxZ, chunkPos.getEndZ());
+        final ChunkSection[] sections = chunk.getSectionArray();
+        final BlockPos.Mutable pos = new BlockPos.Mutable();
+        for (int y = 0; y < sections.length; ++y) {
+            if (ChunkSection.isEmpty(sections[y]))
+                continue;
+            for (int blockY = y << 4; blockY < (y + 1) << 4; ++blockY) {
+                for (int blockX = startX; blockX <= endX; ++blockX) {
+                    for (int blockZ = startZ; blockZ <= endZ; ++blockZ) {
+                        pos.set(blockX, blockY, blockZ);
+                        if (chunk.getBlockState(pos).isAir() == false) {
+                            // Notify clients but skip neighbour shape updates, the light, heightmaps and points of interest follow the block
+                            world.setBlockState(pos, Blocks.AIR.getDefaultState(), 2 | 16);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isInside(final BlockPos pos) {
+        return pos.getX() >= this.minX && pos.getX() <= this.maxX && pos.getZ() >= this.minZ && pos.getZ() <= this.maxZ;
+    }
+
+    private static boolean isRemovable(final Entity entity) {
+        return entity instanceof PlayerEntity == false && entity.getPassengerList().isEmpty();
+    }
+}
\ No newline at end of file
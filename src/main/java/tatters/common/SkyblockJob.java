@@ -0,0 +1,156 @@
+/*
+ * This file is part of Tatters.
+ * Copyright (c) 2021, warjort and others, All rights reserved.
+ *
+ * Tatters is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tatters is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Tatters.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package tatters.common;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import com.google.common.collect.Lists;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.TranslatableText;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.chunk.WorldChunk;
+import tatters.config.SkyblockTemplate;
+import tatters.config.TattersConfig;
+
+// Places a skyblock over several ticks, the skyblock is only registered once it is complete
+public class SkyblockJob {
+
+    // Check the time budget after this many blocks
+    private static final int BATCH_SIZE = 256;
+
+    private static final int PROGRESS_INTERVAL = 10;
+
+    private final Skyblock skyblock;
+
+    private final SkyblockTemplate template;
+
+    private final BlockPos origin;
+
+    private final CompletableFuture<Skyblock> future = new CompletableFuture<>();
+
+    private final List<UUID> watchers = Lists.newArrayList();
+
+    // Chunks written in bulk this tick, each is sent to the players once when the tick's work is done
+    private final Long2ObjectMap<WorldChunk> touched = new Long2ObjectOpenHashMap<>();
+
+    private int cursor = 0;
+
+    private int ticks = 0;
+
+    private final long createdNanos = System.nanoTime();
+
+    // Time spent placing blocks over all the ticks
+    private long placeNanos = 0L;
+
+    SkyblockJob(final Skyblock skyblock, final SkyblockTemplate template, final BlockPos origin) {
+        this.skyblock = skyblock;
+        this.template = template;
+        this.origin = origin;
+    }
+
+    // For skyblocks that did not need placing, e.g. claimed from the pool
+    static SkyblockJob completed(final Skyblock skyblock) {
+        final SkyblockJob result = new SkyblockJob(skyblock, null, null);
+        result.future.complete(skyblock);
+        return result;
+    }
+
+    private int size() {
+        return this.template == null ? 0 : this.template.size();
+    }
+
+    public Skyblock getSkyblock() {
+        return this.skyblock;
+    }
+
+    public CompletableFuture<Skyblock> getFuture() {
+        return this.future;
+    }
+
+    public boolean isDone() {
+        return this.cursor >= size();
+    }
+
+    public int getProgress() {
+        final int size = size();
+        return size == 0 ? 100 : (int) (100L * this.cursor / size);
+    }
+
+    long getCreatedNanos() {
+        return this.createdNanos;
+    }
+
+    long getPlaceNanos() {
+        return this.placeNanos;
+    }
+
+    // Players that get told how the creation is going
+    public void addWatcher(final UUID uuid) {
+        if (!this.watchers.contains(uuid))
+            this.watchers.add(uuid);
+    }
+
+    // Returns the number of blocks placed, stops when either budget is used up
+    int run(final int blockBudget, final long deadline) {
+        final TattersConfig config = TattersConfig.getConfig();
+        final ServerWorld world = this.skyblock.getSkyblocks().getWorld();
+        final long startNanos = System.nanoTime();
+        final int start = this.cursor;
+        final int end = Math.min(this.template.size(), start + blockBudget);
+        try {
+            while (this.cursor < end) {
+                final int to = Math.min(end, this.cursor + BATCH_SIZE);
+                if (config.bulkPlacement) {
+                    this.template.placeBulk(world, this.origin, this.cursor, to, this.touched);
+                } else {
+                    this.template.place(world, this.origin, this.cursor, to);
+                }
+                this.cursor = to;
+                if (System.nanoTime() - deadline >= 0)
+                    break;
+            }
+        } finally {
+            // Also sends what was written before a failure, the erase that follows replaces it
+            if (!this.touched.isEmpty()) {
+                SkyblockTemplate.refreshChunks(world, this.touched.values());
+                this.touched.clear();
+            }
+        }
+        this.placeNanos += System.nanoTime() - startNanos;
+        if (++this.ticks % PROGRESS_INTERVAL == 0 && !isDone()) {
+            sendProgress();
+        }
+        return this.cursor - start;
+    }
+
+    private void sendProgress() {
+        final TranslatableText message = new TranslatableText("tatters.command.progress", getProgress());
+        for (UUID uuid : this.watchers) {
+            final ServerPlayerEntity player = this.skyblock.getSkyblocks().getWorld().getServer().getPlayerManager().getPlayer(uuid);
+            if (player != null) {
+                player.sendMessage(message, true);
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * This file is part of Tatters.
+ * Copyright (c) 2021, warjort and others, All rights reserved.
+ *
+ * Tatters is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tatters is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Tatters.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package tatters.common;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import it.unimi.dsi.fastutil.objects.ObjectAVLTreeSet;
+import it.unimi.dsi.fastutil.objects.ObjectSortedSet;
+
+// Skyblock names sorted case insensitively, so pages and prefix searches are binary searches instead of going
+// through every skyblock. Changes go into a tree, the array used for the positional lookups is only rebuilt
+// when the index is read after a change.
+public class SkyblockNameIndex {
+
+    private static final Comparator<Entry> ORDER = Comparator.<Entry, String>comparing(entry -> entry.key)
+            .thenComparing(entry -> entry.uuid);
+
+    private static final Entry[] EMPTY = new Entry[0];
+
+    private final ObjectSortedSet<Entry> sorted = new ObjectAVLTreeSet<>(ORDER);
+
+    // The sorted entries, null after a change until they are next read
+    private Entry[] array = EMPTY;
+
+    private final Map<UUID, Entry> byUUID = Maps.newHashMap();
+
+    public int size() {
+        return this.sorted.size();
+    }
+
+    void put(final UUID uuid, final String name) {
+        final Entry previous = this.byUUID.get(uuid);
+        if (previous != null) {
+            if (previous.name.equals(name))
+                return;
+            remove(uuid);
+        }
+        final Entry entry = new Entry(uuid, name);
+        this.sorted.add(entry);
+        this.byUUID.put(uuid, entry);
+        this.array = null;
+    }
+
+    void remove(final UUID uuid) {
+        final Entry entry = this.byUUID.remove(uuid);
+        if (entry != null) {
+            this.sorted.remove(entry);
+            this.array = null;
+        }
+    }
+
+    // A copy of count entries from the start position
+    public List<Entry> list(final int from, final int count) {
+        final Entry[] array = getArray();
+        final int start = Math.max(0, Math.min(from, array.length));
+        return Lists.newArrayList(Arrays.asList(array).subList(start, Math.min(array.length, start + count)));
+    }
+
+    // The position of the first name starting with the prefix, or where it would be
+    public int findFirst(final String prefix) {
+        return lowerBound(toKey(prefix));
+    }
+
+    // The number of names starting with the prefix
+    public int count(final String prefix) {
+        final String key = toKey(prefix);
+        final String end = nextPrefix(key);
+        return (end == null ? size() : lowerBound(end)) - lowerBound(key);
+    }
+
+    // The lowest string above every string starting with the prefix, or null when there is none.
+    // Strings compare char by char, so this is the prefix with its last char incremented, after
+    // dropping trailing chars that are already the highest.
+    static String nextPrefix(final String prefix) {
+        int length = prefix.length();
+        while (length > 0 && prefix.charAt(length - 1) == Character.MAX_VALUE) {
+            --length;
+        }
+        if (length == 0)
+            return null;
+        return prefix.substring(0, length - 1) + (char) (prefix.charAt(length - 1) + 1);
+    }
+
+    // Any skyblock with this name, ignoring case
+    public Entry get(final String name) {
+        final String key = toKey(name);
+        final Entry[] array = getArray();
+        final int index = lowerBound(key);
+        if (index < array.length && array[index].key.equals(key))
+            return array[index];
+        return null;
+    }
+
+    private Entry[] getArray() {
+        if (this.array == null) {
+            this.array = this.sorted.toArray(EMPTY);
+        }
+        return this.array;
+    }
+
+    private int lowerBound(final String key) {
+        final Entry[] array = getArray();
+        int low = 0;
+        int high = array.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (array[middle].key.compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static String toKey(final String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    public static class Entry {
+
+        private final UUID uuid;
+
+        private final String name;
+
+        private final String key;
+
+        Entry(final UUID uuid, final String name) {
+            this.uuid = uuid;
+            this.name = name;
+            this.key = toKey(name);
+        }
+
+        public UUID getUUID() {
+            return this.uuid;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+    }
+}
\ No newline at end of file
@@ -17,65 +17,126 @@
  */
 package tatters.common;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 import tatters.config.TattersConfig;
 
+// The skyblock grid. Cells are handed out in spiral order by an atomic counter so any thread can allocate one,
+// the spacing and height only change when the world's data is loaded.
 public class SkyblockPos {
 
     private int spacing = TattersConfig.getConfig().spacing;
 
-    private int layer = 0;
-
-    private int x = 0;
-
     private int y = TattersConfig.getConfig().defaultY;
 
-    private int z = 0;
+    // The spiral index of the next cell
+    private final AtomicInteger next = new AtomicInteger();
+
+    public int getSpacing() {
+        return this.spacing;
+    }
 
     // Used to put skblocks in the centre of a chunk
     public int centre(final int original) {
         return 8 + 16 * (original / 16);
     }
 
+    // The position of the next skyblock
     public BlockPos getPos() {
-        return new BlockPos(centre(this.x * this.spacing), this.y, centre(this.z * this.spacing));
+        return getPos(this.next.get());
+    }
+
+    public BlockPos getPos(final int cellX, final int cellZ) {
+        return new BlockPos(centre(cellX * this.spacing), this.y, centre(cellZ * this.spacing));
+    }
+
+    public BlockPos getPos(final int index) {
+        final long cell = getCell(index);
+        return getPos(ChunkPos.getPackedX(cell), ChunkPos.getPackedZ(cell));
+    }
+
+    // The index of the next skyblock
+    public int getIndex() {
+        return this.next.get();
+    }
+
+    // Reserves the next cell in the spiral, safe from any thread
+    public int allocateIndex() {
+        return this.next.getAndIncrement();
+    }
+
+    // The grid cell containing the block position, packed like ChunkPos.toLong()
+    public long getCellAt(final int blockX, final int blockZ) {
+        final int half = this.spacing / 2;
+        return ChunkPos.toLong(Math.floorDiv(blockX + half, this.spacing), Math.floorDiv(blockZ + half, this.spacing));
+    }
+
+    public long getCellAt(final BlockPos pos) {
+        return getCellAt(pos.getX(), pos.getZ());
+    }
+
+    // The lowest block x or z inside the grid cell x or z, the cell is spacing blocks wide
+    public int getCellStart(final int cell) {
+        return cell * this.spacing - this.spacing / 2;
+    }
+
+    // The order cells are allocated in, layer n is the ring of cells n away from 0,0
+    // with (2n-1)^2 cells inside it. Each ring starts with the -z edge, then alternates between the
+    // -x and +x edges, then finishes with the +z edge.
+    public static int getIndex(final int cellX, final int cellZ) {
+        final long layer = Math.max(Math.abs(cellX), Math.abs(cellZ));
+        if (layer == 0)
+            return 0;
+        final long inside = (2 * layer - 1) * (2 * layer - 1);
+        if (cellZ == -layer)
+            return (int) (inside + cellX + layer);
+        if (cellZ == layer)
+            return (int) (inside + 2 * layer + 1 + 2 * (2 * layer - 1) + cellX + layer);
+        return (int) (inside + 2 * layer + 1 + 2 * (cellZ + layer - 1) + (cellX == layer ? 1 : 0));
     }
 
-    public void nextPos() {
-        // Finished the previous layer, start a new one
-        if (this.x == this.layer && this.z == this.layer) {
-            ++this.layer;
-            this.x = -this.layer;
-            this.z = -this.layer;
-            return;
-        }
-        // Iterate to the next x position if we are on a z edge 
-        if (this.x < this.layer && (this.z == this.layer || this.z == -this.layer)) {
-            ++this.x;
-            return;
-        }
-        // When not on a z edge just oscillate between the max x values
-        this.x = -this.x;
-        // Advancing the z when we switch to the negative x side
-        if (this.x < 0)
-            ++this.z;
+    // The grid cell of the index, packed like ChunkPos.toLong()
+    public static long getCell(final int index) {
+        if (index <= 0)
+            return ChunkPos.toLong(0, 0);
+        long layer = (long) ((Math.sqrt(index) + 1) / 2);
+        // Correct any rounding from the square root
+        while ((2 * layer + 1) * (2 * layer + 1) <= index)
+            ++layer;
+        while ((2 * layer - 1) * (2 * layer - 1) > index)
+            --layer;
+        long offset = index - (2 * layer - 1) * (2 * layer - 1);
+        if (offset <= 2 * layer)
+            return ChunkPos.toLong((int) (offset - layer), (int) -layer);
+        offset -= 2 * layer + 1;
+        if (offset < 2 * (2 * layer - 1))
+            return ChunkPos.toLong((int) ((offset & 1) == 0 ? -layer : layer), (int) (-layer + 1 + offset / 2));
+        offset -= 2 * (2 * layer - 1);
+        return ChunkPos.toLong((int) (offset - layer), (int) layer);
     }
 
     public void fromTag(final CompoundTag tag) {
         this.spacing = tag.getInt("spacing");
-        this.layer = tag.getInt("layer");
-        this.x = tag.getInt("x");
         this.y = tag.getInt("y");
-        this.z = tag.getInt("z");
+        // Older saves only have the cell of the next skyblock
+        this.next.set(tag.contains("index") ? tag.getInt("index") : getIndex(tag.getInt("x"), tag.getInt("z")));
     }
 
+    // The next cell is also written the old way so the world can still be opened by earlier versions
     public CompoundTag toTag(final CompoundTag tag) {
+        final int index = this.next.get();
+        final long cell = getCell(index);
+        final int x = ChunkPos.getPackedX(cell);
+        final int z = ChunkPos.getPackedZ(cell);
         tag.putInt("spacing", this.spacing);
-        tag.putInt("layer", this.layer);
-        tag.putInt("x", this.x);
+        tag.putInt("index", index);
+        tag.putInt("layer", Math.max(Math.abs(x), Math.abs(z)));
+        tag.putInt("x", x);
         tag.putInt("y", this.y);
-        tag.putInt("z", this.z);
+        tag.putInt("z", z);
         return tag;
     }
 }
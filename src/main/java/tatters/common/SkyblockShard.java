@@ -0,0 +1,204 @@
+/*
+ * This file is part of Tatters.
+ * Copyright (c) 2021, warjort and others, All rights reserved.
+ *
+ * Tatters is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tatters is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Tatters.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package tatters.common;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.ObjLongConsumer;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.StringTag;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.PersistentState;
+
+// A slice of the skyblocks saved in its own data file, so a save only rewrites the slices that changed.
+// Saved records are only turned into skyblocks when they are looked up.
+public class SkyblockShard extends PersistentState {
+
+    private final Skyblocks skyblocks;
+
+    // Skyblocks that have been created or looked up
+    private final Map<UUID, Skyblock> hydrated = Maps.newHashMap();
+
+    // uuid -> index into the saved records for the ones not looked up yet
+    private final Object2IntMap<UUID> offsets = new Object2IntOpenHashMap<>();
+
+    private long[] spawns = new long[0];
+
+    private ListTag names = new ListTag();
+
+    SkyblockShard(final Skyblocks skyblocks, final int shard) {
+        super(getId(shard));
+        this.skyblocks = skyblocks;
+        this.offsets.defaultReturnValue(-1);
+    }
+
+    public static String getId(final int shard) {
+        return Skyblocks.PERSISTANCE_ID + "-" + shard;
+    }
+
+    public static int getShard(final UUID uuid, final int shards) {
+        return Math.floorMod(uuid.hashCode(), shards);
+    }
+
+    public synchronized Skyblock get(final UUID uuid) {
+        final Skyblock result = this.hydrated.get(uuid);
+        if (result != null)
+            return result;
+        final int offset = this.offsets.removeInt(uuid);
+        if (offset < 0)
+            return null;
+        final Skyblock skyblock = hydrate(uuid, offset);
+        this.hydrated.put(uuid, skyblock);
+        return skyblock;
+    }
+
+    public synchronized boolean contains(final UUID uuid) {
+        return this.hydrated.containsKey(uuid) || this.offsets.containsKey(uuid);
+    }
+
+    public synchronized int size() {
+        return this.hydrated.size() + this.offsets.size();
+    }
+
+    // A snapshot, records that were not looked up are not kept once the caller is finished with them
+    public synchronized List<Skyblock> list() {
+        final List<Skyblock> result = Lists.newArrayListWithCapacity(size());
+        result.addAll(this.hydrated.values());
+        for (Object2IntMap.Entry<UUID> entry : this.offsets.object2IntEntrySet()) {
+            result.add(hydrate(entry.getKey(), entry.getIntValue()));
+        }
+        return result;
+    }
+
+    // Visits the packed spawn position of every skyblock without creating them
+    synchronized void forEachSpawn(final ObjLongConsumer<UUID> consumer) {
+        this.hydrated.forEach((uuid, skyblock) -> consumer.accept(uuid, skyblock.getSpawnPos().asLong()));
+        for (Object2IntMap.Entry<UUID> entry : this.offsets.object2IntEntrySet()) {
+            consumer.accept(entry.getKey(), this.spawns[entry.getIntValue()]);
+        }
+    }
+
+    // Visits the name of every skyblock without creating them
+    synchronized void forEachName(final BiConsumer<UUID, String> consumer) {
+        this.hydrated.forEach((uuid, skyblock) -> consumer.accept(uuid, skyblock.getName()));
+        for (Object2IntMap.Entry<UUID> entry : this.offsets.object2IntEntrySet()) {
+            consumer.accept(entry.getKey(), this.names.getString(entry.getIntValue()));
+        }
+    }
+
+    synchronized void put(final Skyblock skyblock) {
+        this.hydrated.put(skyblock.getUUID(), skyblock);
+        this.offsets.removeInt(skyblock.getUUID());
+        markDirty();
+    }
+
+    synchronized void remove(final UUID uuid) {
+        final boolean removed = this.hydrated.remove(uuid) != null;
+        if (this.offsets.removeInt(uuid) >= 0 || removed)
+            markDirty();
+    }
+
+    private Skyblock hydrate(final UUID uuid, final int offset) {
+        return new Skyblock(this.skyblocks, uuid, this.names.getString(offset), BlockPos.fromLong(this.spawns[offset]));
+    }
+
+    @Override
+    public void save(final File file) {
+        if (!isDirty()) {
+            super.save(file);
+            return;
+        }
+        final long start = System.nanoTime();
+        super.save(file);
+        TattersMetrics.METRICS.recordSave(System.nanoTime() - start, file.length());
+    }
+
+    @Override
+    public synchronized void fromTag(final CompoundTag tag) {
+        if (!tag.contains("uuidMost")) {
+            fromLegacyTag(tag);
+            return;
+        }
+        final long[] uuidMost = tag.getLongArray("uuidMost");
+        final long[] uuidLeast = tag.getLongArray("uuidLeast");
+        final long[] spawns = tag.getLongArray("spawns");
+        final ListTag names = tag.getList("names", 8);
+        if (uuidLeast.length != uuidMost.length || spawns.length != uuidMost.length || names.size() != uuidMost.length)
+            throw new IllegalStateException("Corrupted skyblock data: " + getId());
+        for (int i = 0; i < uuidMost.length; ++i) {
+            this.offsets.put(new UUID(uuidMost[i], uuidLeast[i]), i);
+        }
+        this.spawns = spawns;
+        this.names = names;
+    }
+
+    // Each skyblock as a compound keyed by the uuid string
+    private void fromLegacyTag(final CompoundTag tag) {
+        final CompoundTag skyblocks = tag.getCompound("skyblocks");
+        for (String key : skyblocks.getKeys()) {
+            final UUID uuid = UUID.fromString(key);
+            final Skyblock skyblock = new Skyblock(this.skyblocks, uuid);
+            skyblock.fromTag(skyblocks.getCompound(key));
+            this.hydrated.put(uuid, skyblock);
+        }
+    }
+
+    // Parallel arrays: uuids as two longs, spawns as packed block positions and a table of names
+    @Override
+    public synchronized CompoundTag toTag(final CompoundTag tag) {
+        final int size = size();
+        final long[] uuidMost = new long[size];
+        final long[] uuidLeast = new long[size];
+        final long[] spawns = new long[size];
+        final ListTag names = new ListTag();
+        int i = 0;
+        for (Skyblock skyblock : this.hydrated.values()) {
+            final UUID uuid = skyblock.getUUID();
+            uuidMost[i] = uuid.getMostSignificantBits();
+            uuidLeast[i] = uuid.getLeastSignificantBits();
+            spawns[i] = skyblock.getSpawnPos().asLong();
+            names.add(StringTag.of(skyblock.getName()));
+            ++i;
+        }
+        // Copied across without creating the skyblocks
+        for (Object2IntMap.Entry<UUID> entry : this.offsets.object2IntEntrySet()) {
+            final UUID uuid = entry.getKey();
+            final int offset = entry.getIntValue();
+            uuidMost[i] = uuid.getMostSignificantBits();
+            uuidLeast[i] = uuid.getLeastSignificantBits();
+            spawns[i] = this.spawns[offset];
+            names.add(this.names.get(offset));
+            ++i;
+        }
+        tag.putLongArray("uuidMost", uuidMost);
+        tag.putLongArray("uuidLeast", uuidLeast);
+        tag.putLongArray("spawns", spawns);
+        tag.put("names", names);
+        return tag;
+    }
+}
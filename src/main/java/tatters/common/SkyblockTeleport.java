@@ -0,0 +1,117 @@
+/*
+ * This file is part of Tatters.
+ * Copyright (c) 2021, warjort and others, All rights reserved.
+ *
+ * Tatters is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tatters is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Tatters.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package tatters.common;
+
+import static tatters.TattersMain.log;
+
+import java.util.Comparator;
+import java.util.UUID;
+
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ChunkTicketType;
+import net.minecraft.server.world.ServerChunkManager;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import tatters.config.TattersConfig;
+
+// Keeps the destination chunks loaded and only moves the player when they are ready
+public class SkyblockTeleport {
+
+    public static final ChunkTicketType<ChunkPos> TICKET = ChunkTicketType.create("tatters_teleport",
+            Comparator.comparingLong(ChunkPos::toLong));
+
+    private final Skyblock skyblock;
+
+    private final UUID player;
+
+    private final ChunkPos chunkPos;
+
+    private final int radius;
+
+    private final int timeout;
+
+    private int ticks = 0;
+
+    private final long createdNanos = System.nanoTime();
+
+    SkyblockTeleport(final Skyblock skyblock, final ServerPlayerEntity player) {
+        final TattersConfig config = TattersConfig.getConfig();
+        this.skyblock = skyblock;
+        this.player = player.getUuid();
+        this.chunkPos = new ChunkPos(skyblock.getSpawnPos());
+        this.radius = config.teleportChunkRadius;
+        this.timeout = config.teleportTimeoutTicks;
+        getChunkManager().addTicket(TICKET, this.chunkPos, this.radius, this.chunkPos);
+    }
+
+    public UUID getPlayer() {
+        return this.player;
+    }
+
+    // Returns true when the teleport is finished
+    boolean tick() {
+        if (!isLoaded() && ++this.ticks < this.timeout)
+            return false;
+        if (this.ticks >= this.timeout) {
+            TattersMetrics.METRICS.teleportTimeouts.increment();
+            log.warn("Timed out waiting for chunks to load at " + this.chunkPos + " for " + this.skyblock.getName());
+        }
+        final ServerWorld world = this.skyblock.getSkyblocks().getWorld();
+        final ServerPlayerEntity player = world.getServer().getPlayerManager().getPlayer(this.player);
+        if (player != null) {
+            move(player, world);
+            TattersMetrics.METRICS.teleport.record(System.nanoTime() - this.createdNanos);
+        }
+        cancel();
+        return true;
+    }
+
+    void cancel() {
+        getChunkManager().removeTicket(TICKET, this.chunkPos, this.radius, this.chunkPos);
+    }
+
+    private boolean isLoaded() {
+        final ServerChunkManager chunkManager = getChunkManager();
+        for (int x = -this.radius; x <= this.radius; ++x) {
+            for (int z = -this.radius; z <= this.radius; ++z) {
+                if (!chunkManager.isChunkLoaded(this.chunkPos.x + x, this.chunkPos.z + z))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private void move(final ServerPlayerEntity player, final ServerWorld world) {
+        final BlockPos spawnPos = this.skyblock.getSpawnPos();
+        final double x = spawnPos.getX() + 0.5d;
+        final double z = spawnPos.getZ() + 0.5d;
+        if (player.getServerWorld() != world) {
+            player.teleport(world, x, spawnPos.getY(), z, player.yaw, player.pitch);
+            return;
+        }
+        if (player.hasVehicle()) {
+            player.stopRiding();
+        }
+        player.requestTeleport(x, spawnPos.getY(), z);
+    }
+
+    private ServerChunkManager getChunkManager() {
+        return this.skyblock.getSkyblocks().getWorld().getChunkManager();
+    }
+}
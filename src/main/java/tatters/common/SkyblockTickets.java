@@ -0,0 +1,267 @@
+/*
+ * This file is part of Tatters.
+ * Copyright (c) 2021, warjort and others, All rights reserved.
+ *
+ * Tatters is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tatters is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Tatters.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package tatters.common;
+
+import static tatters.TattersMain.log;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
+import com.google.common.collect.Maps;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongSet;
+
+import net.minecraft.scoreboard.AbstractTeam;
+import net.minecraft.scoreboard.Team;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Util;
+import net.minecraft.util.math.ChunkPos;
+import tatters.config.TattersConfig;
+
+// Keeps the islands of online players loaded and lets go of them once their members have been away for a while,
+// so what stays loaded follows the players that are online rather than every island that was ever visited.
+// Also decides which grid cells are active for the idle island tick throttling.
+public class SkyblockTickets {
+
+    // Membership is rechecked this often
+    private static final int CHECK_INTERVAL = 20;
+
+    private final Skyblocks skyblocks;
+
+    // Island owner -> its ticket
+    private final Map<UUID, Ticket> tickets = Maps.newHashMap();
+
+    // Grid cells ticked at the full rate: islands with a member online or held for scheduled work,
+    // the lobby and wherever a player is. Rebuilt with the membership.
+    private LongSet activeCells = new LongOpenHashSet();
+
+    // Island owner -> the last check a member was online, kept whatever the ticket radius
+    private final Object2IntMap<UUID> lastSeen = new Object2IntOpenHashMap<>();
+
+    // Grid cell -> the forced chunks dropped while its island was idle, forced again when a member returns.
+    // Saved with the skyblocks.
+    private final Long2ObjectMap<LongList> droppedChunks = new Long2ObjectOpenHashMap<>();
+
+    // Nothing is known about islands used before the server started, so give them the full idle time
+    private int startTick = -1;
+
+    SkyblockTickets(final Skyblocks skyblocks) {
+        this.skyblocks = skyblocks;
+    }
+
+    // Whether the island currently has a ticket, i.e. a member is online or was recently
+    public boolean isActive(final UUID uuid) {
+        return this.tickets.containsKey(uuid);
+    }
+
+    // Whether the grid cell should tick at the full rate
+    public boolean isActiveCell(final long cell) {
+        return this.activeCells.contains(cell);
+    }
+
+    // Keeps the island loaded for at least this many ticks, e.g. for a scheduled event, even when nobody is online
+    public void keepLoaded(final Skyblock skyblock, final int ticks) {
+        final TattersConfig config = TattersConfig.getConfig();
+        final int until = getTicks() + ticks;
+        hold(skyblock, Math.max(1, config.islandTicketRadius), until);
+        final Ticket ticket = this.tickets.get(skyblock.getUUID());
+        if (ticket != null) {
+            ticket.scheduled = Math.max(ticket.scheduled, until);
+            this.activeCells.add(this.skyblocks.getCell(skyblock));
+        }
+    }
+
+    void tick(final TattersConfig config) {
+        final int now = getTicks();
+        if (this.startTick < 0) {
+            this.startTick = now;
+        }
+        if (now % CHECK_INTERVAL != 0)
+            return;
+        final int idleTicks = config.islandIdleSeconds * 20;
+        final ServerWorld world = this.skyblocks.getWorld();
+        final LongSet activeCells = new LongOpenHashSet();
+        final Skyblock lobby = this.skyblocks.getLobby();
+        if (lobby != null) {
+            activeCells.add(this.skyblocks.getCell(lobby));
+        }
+        for (ServerPlayerEntity player : world.getServer().getPlayerManager().getPlayerList()) {
+            member(this.skyblocks.getSkyblock(player), config, now, idleTicks, activeCells);
+            final AbstractTeam team = player.getScoreboardTeam();
+            if (team instanceof Team) {
+                member(this.skyblocks.getSkyblock((Team) team), config, now, idleTicks, activeCells);
+            }
+            // Visitors see the island they are on at the full rate
+            if (player.getServerWorld() == world) {
+                activeCells.add(this.skyblocks.getSkyblockPos().getCellAt(player.getBlockPos()));
+            }
+        }
+        final Iterator<Ticket> iterator = this.tickets.values().iterator();
+        while (iterator.hasNext()) {
+            final Ticket ticket = iterator.next();
+            if (now - ticket.expires > 0) {
+                ticket.skyblock.removeTicket(ticket.radius);
+                iterator.remove();
+            } else if (now - ticket.scheduled <= 0) {
+                activeCells.add(this.skyblocks.getCell(ticket.skyblock));
+            }
+        }
+        this.activeCells = activeCells;
+        if (config.dropIdleForcedChunks) {
+            dropForcedChunks(now, idleTicks);
+        }
+    }
+
+    // Lets go of the island straight away, e.g. when it is removed
+    void release(final UUID uuid) {
+        final Ticket ticket = this.tickets.remove(uuid);
+        if (ticket != null) {
+            ticket.skyblock.removeTicket(ticket.radius);
+        }
+    }
+
+    private void member(final Skyblock skyblock, final TattersConfig config, final int now, final int idleTicks,
+            final LongSet activeCells) {
+        if (skyblock == null)
+            return;
+        markActive(skyblock.getUUID(), this.skyblocks.getCell(skyblock), now, activeCells);
+        if (config.islandTicketRadius > 0) {
+            hold(skyblock, config.islandTicketRadius, now + idleTicks);
+        }
+    }
+
+    // A member of the island is online
+    void markActive(final UUID owner, final long cell, final int now, final LongSet activeCells) {
+        activeCells.add(cell);
+        this.lastSeen.put(owner, now);
+        if (!this.droppedChunks.isEmpty()) {
+            restoreForcedChunks(cell);
+        }
+    }
+
+    // The island in the grid cell is gone, its chunk loaders are not forced again for the next owner
+    void forgetDroppedChunks(final long cell) {
+        if (this.droppedChunks.remove(cell) != null) {
+            this.skyblocks.markDirty();
+        }
+    }
+
+    // Nobody is using the island's cell and no member has been online for the idle time,
+    // islands not seen since the server started count from the start
+    boolean isIdle(final UUID owner, final long cell, final int now, final int idleTicks, final LongSet activeCells) {
+        if (activeCells.contains(cell))
+            return false;
+        final int seen = this.lastSeen.containsKey(owner) ? this.lastSeen.getInt(owner) : this.startTick;
+        return now - seen > idleTicks;
+    }
+
+    private void hold(final Skyblock skyblock, final int radius, final int expires) {
+        // Players without an island and the lobby, which is in the spawn chunks anyway
+        if (skyblock == null || skyblock.getUUID().equals(Util.NIL_UUID))
+            return;
+        final Ticket ticket = this.tickets.get(skyblock.getUUID());
+        // Regenerated islands move, so the ticket has to move with them
+        if (ticket != null && ticket.skyblock == skyblock) {
+            ticket.expires = Math.max(ticket.expires, expires);
+            return;
+        }
+        if (ticket != null) {
+            ticket.skyblock.removeTicket(ticket.radius);
+        }
+        skyblock.addTicket(radius);
+        this.tickets.put(skyblock.getUUID(), new Ticket(skyblock, radius, expires));
+    }
+
+    // Chunk loaders in islands whose members are away, forced chunks outside islands are left alone
+    private void dropForcedChunks(final int now, final int idleTicks) {
+        final ServerWorld world = this.skyblocks.getWorld();
+        for (long chunk : world.getForcedChunks().toLongArray()) {
+            final int chunkX = ChunkPos.getPackedX(chunk);
+            final int chunkZ = ChunkPos.getPackedZ(chunk);
+            final int blockX = chunkX * 16 + 8;
+            final int blockZ = chunkZ * 16 + 8;
+            final UUID owner = this.skyblocks.getOwnerAt(blockX, blockZ);
+            final long cell = this.skyblocks.getSkyblockPos().getCellAt(blockX, blockZ);
+            if (owner == null || owner.equals(Util.NIL_UUID) || !isIdle(owner, cell, now, idleTicks, this.activeCells))
+                continue;
+            world.setChunkForced(chunkX, chunkZ, false);
+            this.droppedChunks.computeIfAbsent(cell, key -> new LongArrayList()).add(chunk);
+            this.skyblocks.markDirty();
+            log.info("Dropped forced chunk " + chunkX + ", " + chunkZ + " of idle island #" + Skyblocks.getIndex(cell));
+        }
+    }
+
+    private void restoreForcedChunks(final long cell) {
+        final LongList chunks = this.droppedChunks.remove(cell);
+        if (chunks == null)
+            return;
+        final ServerWorld world = this.skyblocks.getWorld();
+        for (int i = 0; i < chunks.size(); ++i) {
+            world.setChunkForced(ChunkPos.getPackedX(chunks.getLong(i)), ChunkPos.getPackedZ(chunks.getLong(i)), true);
+        }
+        this.skyblocks.markDirty();
+        log.info("Restored " + chunks.size() + " forced chunks of island #" + Skyblocks.getIndex(cell));
+    }
+
+    // The dropped forced chunks, their grid cells are worked out again when they are loaded
+    long[] getDroppedChunks() {
+        final LongList result = new LongArrayList();
+        this.droppedChunks.values().forEach(result::addAll);
+        return result.toLongArray();
+    }
+
+    void setDroppedChunks(final long[] chunks) {
+        this.droppedChunks.clear();
+        final SkyblockPos skyblockPos = this.skyblocks.getSkyblockPos();
+        for (long chunk : chunks) {
+            final long cell = skyblockPos.getCellAt(ChunkPos.getPackedX(chunk) * 16 + 8, ChunkPos.getPackedZ(chunk) * 16 + 8);
+            this.droppedChunks.computeIfAbsent(cell, key -> new LongArrayList()).add(chunk);
+        }
+    }
+
+    private int getTicks() {
+        return this.skyblocks.getWorld().getServer().getTicks();
+    }
+
+    private static class Ticket {
+
+        final Skyblock skyblock;
+
+        final int radius;
+
+        int expires;
+
+        // Held for scheduled work until this tick, it ticks at the full rate until then
+        int scheduled = 0;
+
+        Ticket(final Skyblock skyblock, final int radius, final int expires) {
+            this.skyblock = skyblock;
+            this.radius = radius;
+            this.expires = expires;
+        }
+    }
+}
\ No newline at end of file
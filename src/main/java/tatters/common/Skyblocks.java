@@ -17,41 +17,70 @@
  */
 package tatters.common;
 
+import static tatters.TattersMain.log;
+
+import java.io.File;
 import java.lang.ref.WeakReference;
 import java.nio.charset.StandardCharsets;
-import java.util.Collection;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
+import it.unimi.dsi.fastutil.ints.IntAVLTreeSet;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntSortedSet;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
 import net.minecraft.scoreboard.Team;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.Util;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.PersistentState;
-import tatters.TattersMain;
-import tatters.config.SkyblockConfig;
+import net.minecraft.world.PersistentStateManager;
+import tatters.config.SkyblockTemplate;
 import tatters.config.TattersConfig;
 
 public class Skyblocks extends PersistentState {
 
     public static final String PERSISTANCE_ID = Skyblocks.class.getName();
 
+    private static final int DEFAULT_SHARDS = 64;
+
     public static UUID getTeamUUID(final Team team) {
         return UUID.nameUUIDFromBytes(("team:" + team.getName()).getBytes(StandardCharsets.UTF_8));
     }
 
     public static Skyblocks getSkyblocks(final ServerWorld world) {
-        if (TattersMain.isTattersWorld(world) == false)
-            return null;
+        return TattersContext.get(world).getSkyblocks();
+    }
+
+    // Only used by the world's context, which keeps the result
+    static Skyblocks load(final ServerWorld world) {
         final Skyblocks result = world.getPersistentStateManager().getOrCreate(() -> new Skyblocks(), PERSISTANCE_ID);
         result.worldRef = new WeakReference<>(world);
+        if (result.shards == null) {
+            result.loadShards(world);
+        }
         return result;
     }
 
+    public static void onServerWorldTick(final ServerWorld world) {
+        final Skyblocks skyblocks = Skyblocks.getSkyblocks(world);
+        if (skyblocks == null)
+            return;
+        skyblocks.tick();
+    }
+
     public static void onServerPlayerLoad(final ServerPlayerEntity player, final ServerWorld world) {
         final Skyblocks skyblocks = Skyblocks.getSkyblocks(world);
         if (skyblocks == null)
@@ -69,22 +98,126 @@ public class Skyblocks extends PersistentState {
 
     private SkyblockPos skyblockPos = new SkyblockPos();
 
-    private Map<UUID, Skyblock> skyblocksByPlayer = Maps.newConcurrentMap();
+    // Spiral indexes of abandoned grid cells, reused lowest first before the spiral grows.
+    // Guarded by itself since cells can be allocated from any thread.
+    private final IntSortedSet freeCells = new IntAVLTreeSet();
+
+    // Abandoned grid cells still being erased, their cells are freed when they are finished
+    private final List<SkyblockEraseJob> erasing = Lists.newArrayList();
+
+    // Grid cell -> owner, only used from the server thread
+    private Long2ObjectMap<UUID> skyblocksByCell = new Long2ObjectOpenHashMap<>();
+
+    // Skyblocks still being placed, in creation order
+    private final Map<UUID, SkyblockJob> jobs = Maps.newLinkedHashMap();
+
+    // Pre-built skyblocks waiting for an owner
+    private final List<PooledSkyblock> pool = Lists.newArrayList();
+
+    private SkyblockJob poolJob = null;
+
+    private String poolJobTemplate = null;
+
+    private int poolJobFingerprint = 0;
+
+    // Players waiting for the chunks at their destination
+    private final List<SkyblockTeleport> teleports = Lists.newArrayList();
+
+    private int shardCount = DEFAULT_SHARDS;
+
+    // The skyblocks are saved in these, loaded once the world is known
+    private SkyblockShard[] shards = null;
+
+    private TattersLoadTest loadTest = null;
+
+    private final SkyblockTickets tickets = new SkyblockTickets(this);
+
+    private int tickCount = 0;
+
+    // Whether islands without an online member tick during the current world tick
+    private boolean idleTicking = true;
+
+    // Built the first time it is used, then kept up to date
+    private SkyblockNameIndex names = null;
+
+    // Skyblocks read from the old single file format, moved into the shards when they are loaded
+    private Map<UUID, Skyblock> legacy = null;
 
     private Skyblocks() {
         super(PERSISTANCE_ID);
     }
 
+    // Not backed by a world, the shards are only kept in memory. For the tests.
+    Skyblocks(final int shardCount) {
+        this();
+        this.shardCount = shardCount;
+        this.shards = new SkyblockShard[shardCount];
+        for (int i = 0; i < shardCount; ++i) {
+            this.shards[i] = new SkyblockShard(this, i);
+        }
+    }
+
     public ServerWorld getWorld() {
         return this.worldRef.get();
     }
 
+    // Only the grid cell index is built here, the skyblocks themselves are created when they are first used
+    private void loadShards(final ServerWorld world) {
+        final long start = System.nanoTime();
+        final PersistentStateManager manager = world.getPersistentStateManager();
+        final SkyblockShard[] shards = new SkyblockShard[this.shardCount];
+        for (int i = 0; i < shards.length; ++i) {
+            final int shard = i;
+            shards[i] = manager.getOrCreate(() -> new SkyblockShard(this, shard), SkyblockShard.getId(shard));
+        }
+        this.shards = shards;
+
+        if (this.legacy != null) {
+            log.info("Moving " + this.legacy.size() + " skyblocks into " + shards.length + " shards");
+            this.legacy.forEach((uuid, skyblock) -> {
+                // Anything already in a shard is newer
+                final SkyblockShard shard = getShard(uuid);
+                if (!shard.contains(uuid)) {
+                    shard.put(skyblock);
+                }
+            });
+            this.legacy = null;
+            markDirty();
+        }
+
+        final Long2ObjectMap<UUID> byCell = new Long2ObjectOpenHashMap<>(Arrays.stream(shards).mapToInt(SkyblockShard::size).sum());
+        for (SkyblockShard shard : shards) {
+            shard.forEachSpawn((uuid, spawn) -> byCell.put(this.skyblockPos.getCellAt(BlockPos.unpackLongX(spawn), BlockPos.unpackLongZ(spawn)), uuid));
+        }
+        this.skyblocksByCell = byCell;
+        log.info("Indexed " + byCell.size() + " skyblocks in " + (System.nanoTime() - start) / 1000000L + "ms");
+    }
+
+    private SkyblockShard getShard(final UUID uuid) {
+        return this.shards[SkyblockShard.getShard(uuid, this.shards.length)];
+    }
+
     SkyblockPos getSkyblockPos() {
         return this.skyblockPos;
     }
 
-    public Collection<Skyblock> listSkyblocks() {
-        return Collections.unmodifiableCollection(this.skyblocksByPlayer.values());
+    // Goes through the shards one at a time, skyblocks that have not been used are not kept afterwards
+    public Iterable<Skyblock> listSkyblocks() {
+        return Iterables.concat(Iterables.transform(Arrays.asList(this.shards), SkyblockShard::list));
+    }
+
+    // Only used from the server thread
+    public SkyblockNameIndex getNameIndex() {
+        if (this.names == null) {
+            final long start = System.nanoTime();
+            final SkyblockNameIndex names = new SkyblockNameIndex();
+            for (SkyblockShard shard : this.shards) {
+                shard.forEachName(names::put);
+            }
+            this.names = names;
+            log.info("Indexed " + names.size() + " skyblock names in " + (System.nanoTime() - start) / 1000000L + "ms");
+        }
+        return this.names;
     }
 
     public Skyblock getLobby() {
@@ -100,55 +233,464 @@ public class Skyblocks extends PersistentState {
     }
 
     public Skyblock getSkyblock(final UUID uuid) {
-        return skyblocksByPlayer.get(uuid);
+        return getShard(uuid).get(uuid);
+    }
+
+    // Goes through the skyblock's shard, which creates the skyblock the first time it is used.
+    // Hot paths that only need to know whose island it is should use getOwnerAt().
+    public Skyblock getSkyblockAt(final int blockX, final int blockZ) {
+        final UUID uuid = getOwnerAt(blockX, blockZ);
+        return uuid == null ? null : getSkyblock(uuid);
+    }
+
+    // The owner of the skyblock in the grid cell, or null. Constant time, does not lock or allocate.
+    public UUID getOwnerAt(final int blockX, final int blockZ) {
+        return this.skyblocksByCell.get(this.skyblockPos.getCellAt(blockX, blockZ));
+    }
+
+    public Skyblock getSkyblockAt(final BlockPos pos) {
+        return getSkyblockAt(pos.getX(), pos.getZ());
+    }
+
+    public Skyblock getSkyblockByIndex(final int index) {
+        final UUID uuid = this.skyblocksByCell.get(SkyblockPos.getCell(index));
+        return uuid == null ? null : getSkyblock(uuid);
     }
 
     public Skyblock createLobby() {
-        final Skyblock lobby = createSkyblock(Util.NIL_UUID, "<lobby>", TattersConfig.getConfig().getLobbyConfig());
+        final Skyblock lobby = createSkyblock(Util.NIL_UUID, "<lobby>", TattersConfig.getConfig().getLobbyTemplate());
         getWorld().setSpawnPos(lobby.getSpawnPos(), 0.0F);
         return lobby;
     }
 
     public Skyblock createSkyblock(final ServerPlayerEntity player) {
-        return createSkyblock(player.getUuid(), player.getEntityName(), TattersConfig.getConfig().getSkyblockConfig());
+        return createSkyblock(player.getUuid(), player.getEntityName(), TattersConfig.getConfig().getSkyblockTemplate());
     }
 
     public Skyblock createSkyblock(final Team team) {
-        return createSkyblock(getTeamUUID(team), team.getName(), TattersConfig.getConfig().getSkyblockConfig());
+        return createSkyblock(getTeamUUID(team), team.getName(), TattersConfig.getConfig().getSkyblockTemplate());
     }
 
-    public Skyblock createSkyblock(final UUID uuid, final String name, final SkyblockConfig config) {
+    public Skyblock createSkyblock(final UUID uuid, final String name, final SkyblockTemplate template) {
+        final long start = System.nanoTime();
         final Skyblock skyblock = new Skyblock(this, uuid, name);
-        skyblock.create(config);
-        this.skyblocksByPlayer.put(uuid, skyblock);
+        final BlockPos origin = skyblock.allocate(template);
         markDirty();
+        final long placing = System.nanoTime();
+        try {
+            skyblock.place(template, origin);
+        } catch (RuntimeException e) {
+            TattersMetrics.METRICS.createFailed.increment();
+            throw e;
+        }
+        register(skyblock);
+        final long end = System.nanoTime();
+        TattersMetrics.METRICS.createResolve.record(placing - start);
+        TattersMetrics.METRICS.createPlace.record(end - placing);
+        TattersMetrics.METRICS.createTotal.record(end - start);
         return skyblock;
     }
 
+    public SkyblockJob createSkyblockAsync(final ServerPlayerEntity player) {
+        return createSkyblockAsync(player.getUuid(), player.getEntityName());
+    }
+
+    public SkyblockJob createSkyblockAsync(final Team team) {
+        return createSkyblockAsync(getTeamUUID(team), team.getName());
+    }
+
+    // Claims a pre-built skyblock from the pool when there is one
+    public SkyblockJob createSkyblockAsync(final UUID uuid, final String name) {
+        final SkyblockJob pending = this.jobs.get(uuid);
+        if (pending != null)
+            return pending;
+        final long start = System.nanoTime();
+        final Skyblock pooled = claimPooled(uuid, name);
+        if (pooled != null) {
+            register(pooled);
+            final long elapsed = System.nanoTime() - start;
+            TattersMetrics.METRICS.createPooled.increment();
+            TattersMetrics.METRICS.createResolve.record(elapsed);
+            TattersMetrics.METRICS.createTotal.record(elapsed);
+            return SkyblockJob.completed(pooled);
+        }
+        return createSkyblockAsync(uuid, name, TattersConfig.getConfig().getSkyblockTemplate());
+    }
+
+    // The skyblock is placed over the following ticks, asking again while it is pending returns the same job
+    public SkyblockJob createSkyblockAsync(final UUID uuid, final String name, final SkyblockTemplate template) {
+        SkyblockJob job = this.jobs.get(uuid);
+        if (job != null)
+            return job;
+        final long start = System.nanoTime();
+        final Skyblock skyblock = new Skyblock(this, uuid, name);
+        final BlockPos origin = skyblock.allocate(template);
+        markDirty();
+        job = new SkyblockJob(skyblock, template, origin);
+        this.jobs.put(uuid, job);
+        TattersMetrics.METRICS.createResolve.record(System.nanoTime() - start);
+        return job;
+    }
+
+    // Package-private for the benchmarks
+    void register(final Skyblock skyblock) {
+        final UUID uuid = skyblock.getUUID();
+        final SkyblockShard shard = getShard(uuid);
+        final Skyblock previous = shard.get(uuid);
+        if (previous != null) {
+            final long cell = getCell(previous);
+            if (uuid.equals(this.skyblocksByCell.get(cell))) {
+                this.skyblocksByCell.remove(cell);
+                abandon(cell);
+            }
+        }
+        this.skyblocksByCell.put(getCell(skyblock), uuid);
+        shard.put(skyblock);
+        if (this.names != null) {
+            this.names.put(uuid, skyblock.getName());
+        }
+    }
+
+    // The lowest free grid cell, or the next one in the spiral. Safe from any thread, it is up to
+    // the caller to mark the skyblocks dirty from the server thread.
+    BlockPos allocate() {
+        synchronized (this.freeCells) {
+            if (!this.freeCells.isEmpty()) {
+                final int index = this.freeCells.firstInt();
+                this.freeCells.remove(index);
+                return this.skyblockPos.getPos(index);
+            }
+        }
+        return this.skyblockPos.getPos(this.skyblockPos.allocateIndex());
+    }
+
+    // Erases the abandoned skyblock in the background before its grid cell is reused.
+    // Without erasing the old blocks are left in place and the cell is never handed out again.
+    void abandon(final long cell) {
+        this.tickets.forgetDroppedChunks(cell);
+        if (!TattersConfig.getConfig().eraseAbandoned)
+            return;
+        this.erasing.add(new SkyblockEraseJob(this, getIndex(cell)));
+        markDirty();
+    }
+
+    // Removes the skyblock and erases it, returns false if there is no such skyblock
+    public boolean removeSkyblock(final UUID uuid) {
+        if (uuid.equals(Util.NIL_UUID))
+            throw new IllegalArgumentException("The lobby cannot be removed");
+        final SkyblockShard shard = getShard(uuid);
+        final Skyblock skyblock = shard.get(uuid);
+        if (skyblock == null)
+            return false;
+        shard.remove(uuid);
+        if (this.names != null) {
+            this.names.remove(uuid);
+        }
+        this.tickets.release(uuid);
+        final long cell = getCell(skyblock);
+        if (uuid.equals(this.skyblocksByCell.get(cell))) {
+            this.skyblocksByCell.remove(cell);
+            abandon(cell);
+        }
+        return true;
+    }
+
+    // Makes the grid cell available for new skyblocks
+    void release(final long cell) {
+        freeCell(getIndex(cell));
+    }
+
+    private void freeCell(final int index) {
+        synchronized (this.freeCells) {
+            this.freeCells.add(index);
+        }
+        markDirty();
+    }
+
+    long getCell(final Skyblock skyblock) {
+        return this.skyblockPos.getCellAt(skyblock.getSpawnPos());
+    }
+
+    // The spiral index of a packed grid cell
+    static int getIndex(final long cell) {
+        return SkyblockPos.getIndex(ChunkPos.getPackedX(cell), ChunkPos.getPackedZ(cell));
+    }
+
+    void teleport(final Skyblock skyblock, final ServerPlayerEntity player) {
+        final UUID uuid = player.getUuid();
+        this.teleports.removeIf(teleport -> {
+            if (!teleport.getPlayer().equals(uuid))
+                return false;
+            teleport.cancel();
+            return true;
+        });
+        this.teleports.add(new SkyblockTeleport(skyblock, player));
+    }
+
+    private Skyblock claimPooled(final UUID uuid, final String name) {
+        final TattersConfig config = TattersConfig.getConfig();
+        final SkyblockTemplate template = config.getSkyblockTemplate();
+        final Iterator<PooledSkyblock> iterator = this.pool.iterator();
+        while (iterator.hasNext()) {
+            final PooledSkyblock pooled = iterator.next();
+            if (pooled.isBuiltFrom(config.skyblock, template)) {
+                iterator.remove();
+                markDirty();
+                return new Skyblock(this, uuid, name, pooled.spawnPos);
+            }
+        }
+        return null;
+    }
+
+    // Called for every entity, block entity and chunk tick, so it is at most two hash lookups
+    public boolean shouldTick(final int blockX, final int blockZ) {
+        if (this.idleTicking)
+            return true;
+        final long cell = this.skyblockPos.getCellAt(blockX, blockZ);
+        return !this.skyblocksByCell.containsKey(cell) || this.tickets.isActiveCell(cell);
+    }
+
+    public SkyblockTickets getTickets() {
+        return this.tickets;
+    }
+
+    public TattersLoadTest getLoadTest() {
+        return this.loadTest;
+    }
+
+    // Returns null when a load test is already running
+    public TattersLoadTest startLoadTest(final int players, final int joinsPerTick) {
+        if (this.loadTest != null)
+            return null;
+        this.loadTest = new TattersLoadTest(this, players, joinsPerTick, false);
+        return this.loadTest;
+    }
+
+    private void tick() {
+        if (this.loadTest == null) {
+            this.loadTest = TattersLoadTest.fromProperties(this);
+        }
+        if (this.loadTest != null) {
+            this.loadTest.tick();
+            if (this.loadTest.isDone()) {
+                this.loadTest = null;
+            }
+        }
+        if (!this.teleports.isEmpty()) {
+            this.teleports.removeIf(SkyblockTeleport::tick);
+        }
+        final TattersConfig config = TattersContext.get(getWorld()).getConfig();
+        this.tickets.tick(config);
+        // Run at the end of the world tick, so this is for the next one
+        ++this.tickCount;
+        this.idleTicking = config.idleTickDivisor > 0 && this.tickCount % config.idleTickDivisor == 0;
+        final long deadline = System.nanoTime() + config.createMicrosPerTick * 1000L;
+        int budget = config.createBlocksPerTick;
+        if (!this.jobs.isEmpty()) {
+            budget = runJobs(budget, deadline);
+        }
+        // Players waiting for their skyblock come first
+        if (this.jobs.isEmpty() && budget > 0) {
+            fillPool(config, budget, deadline);
+        }
+        if (!this.erasing.isEmpty()) {
+            eraseAbandoned(config);
+        }
+    }
+
+    private void eraseAbandoned(final TattersConfig config) {
+        final SkyblockEraseJob job = this.erasing.get(0);
+        try {
+            if (!job.run(config.eraseChunksPerTick))
+                return;
+        } catch (RuntimeException e) {
+            log.error("Unexpected error erasing skyblock #" + job.getIndex() + ", its grid cell will not be reused", e);
+            job.cancel();
+            this.erasing.remove(0);
+            markDirty();
+            return;
+        }
+        this.erasing.remove(0);
+        freeCell(job.getIndex());
+    }
+
+    int runJobs(int budget, final long deadline) {
+        final List<SkyblockJob> finished = Lists.newArrayList();
+        final Iterator<SkyblockJob> iterator = this.jobs.values().iterator();
+        while (iterator.hasNext() && budget > 0 && System.nanoTime() - deadline < 0) {
+            final SkyblockJob job = iterator.next();
+            try {
+                budget -= job.run(budget, deadline);
+            } catch (RuntimeException e) {
+                log.error("Unexpected error creating skyblock", e);
+                TattersMetrics.METRICS.createFailed.increment();
+                iterator.remove();
+                abandon(getCell(job.getSkyblock()));
+                job.getFuture().completeExceptionally(e);
+                continue;
+            }
+            if (job.isDone()) {
+                iterator.remove();
+                register(job.getSkyblock());
+                // A save while the job was running listed its cell for erasing
+                markDirty();
+                finished.add(job);
+                TattersMetrics.METRICS.createPlace.record(job.getPlaceNanos());
+                TattersMetrics.METRICS.createTotal.record(System.nanoTime() - job.getCreatedNanos());
+            }
+        }
+        // Completed outside the loop, the callbacks might queue more jobs
+        for (SkyblockJob job : finished) {
+            job.getFuture().complete(job.getSkyblock());
+        }
+        return budget;
+    }
+
+    private void fillPool(final TattersConfig config, final int budget, final long deadline) {
+        if (this.poolJob == null) {
+            // Also catches the file changing and being reloaded
+            final SkyblockTemplate current = config.getSkyblockTemplate();
+            if (this.pool.removeIf(pooled -> {
+                if (pooled.isBuiltFrom(config.skyblock, current))
+                    return false;
+                abandon(this.skyblockPos.getCellAt(pooled.spawnPos));
+                return true;
+            })) {
+                log.info("Discarded pooled skyblocks not built from the current " + config.skyblock);
+                markDirty();
+            }
+            if (this.pool.size() >= config.poolSize)
+                return;
+        }
+        // Only use spare time
+        if (getWorld().getServer().getTickTime() > config.poolMaxMspt || System.nanoTime() - deadline >= 0)
+            return;
+        if (this.poolJob == null) {
+            final SkyblockTemplate template = config.getSkyblockTemplate();
+            final Skyblock skyblock = new Skyblock(this, UUID.randomUUID(), "<pool>");
+            this.poolJob = new SkyblockJob(skyblock, template, skyblock.allocate(template));
+            this.poolJobTemplate = config.skyblock;
+            this.poolJobFingerprint = template.getFingerprint();
+            markDirty();
+        }
+        try {
+            this.poolJob.run(budget, deadline);
+        } catch (RuntimeException e) {
+            log.error("Unexpected error creating pooled skyblock", e);
+            abandon(getCell(this.poolJob.getSkyblock()));
+            this.poolJob = null;
+            return;
+        }
+        if (this.poolJob.isDone()) {
+            this.pool.add(new PooledSkyblock(this.poolJob.getSkyblock().getSpawnPos(), this.poolJobTemplate, this.poolJobFingerprint));
+            this.poolJob = null;
+            markDirty();
+        }
+    }
+
+    @Override
+    public void save(final File file) {
+        if (!isDirty()) {
+            super.save(file);
+            return;
+        }
+        final long start = System.nanoTime();
+        super.save(file);
+        TattersMetrics.METRICS.recordSave(System.nanoTime() - start, file.length());
+    }
+
     @Override
     public void fromTag(final CompoundTag tag) {
         this.skyblockPos.fromTag(tag.getCompound("skyblockPos"));
+        this.shardCount = tag.contains("shards") ? tag.getInt("shards") : DEFAULT_SHARDS;
 
-        final Map<UUID, Skyblock> map = Maps.newConcurrentMap();
-        final CompoundTag skyblocks = tag.getCompound("skyblocks");
-        skyblocks.getKeys().stream().forEach((key) -> {
-            final UUID uuid = UUID.fromString(key);
-            final Skyblock skyblock = new Skyblock(this, uuid);
-            skyblock.fromTag(skyblocks.getCompound(key));
-            map.put(uuid, skyblock);
-        });
-        this.skyblocksByPlayer = map;
+        // Worlds saved before the shards
+        if (tag.contains("skyblocks")) {
+            final Map<UUID, Skyblock> map = Maps.newHashMap();
+            final CompoundTag skyblocks = tag.getCompound("skyblocks");
+            skyblocks.getKeys().stream().forEach((key) -> {
+                final UUID uuid = UUID.fromString(key);
+                final Skyblock skyblock = new Skyblock(this, uuid);
+                skyblock.fromTag(skyblocks.getCompound(key));
+                map.put(uuid, skyblock);
+            });
+            this.legacy = map;
+        }
+
+        synchronized (this.freeCells) {
+            this.freeCells.clear();
+            this.freeCells.addAll(IntArrayList.wrap(tag.getIntArray("freeCells")));
+        }
+
+        this.erasing.clear();
+        for (int index : tag.getIntArray("erasing")) {
+            this.erasing.add(new SkyblockEraseJob(this, index));
+        }
+
+        this.tickets.setDroppedChunks(tag.getLongArray("droppedForcedChunks"));
+
+        this.pool.clear();
+        final ListTag pool = tag.getList("pool", 10);
+        for (int i = 0; i < pool.size(); ++i) {
+            final CompoundTag pooled = pool.getCompound(i);
+            // Older saves have no fingerprint, those skyblocks are discarded like after a template change
+            this.pool.add(new PooledSkyblock(BlockPos.fromLong(pooled.getLong("spawn")), pooled.getString("template"),
+                    pooled.contains("fingerprint", 3) ? pooled.getInt("fingerprint") : null));
+        }
     }
 
     @Override
     public CompoundTag toTag(final CompoundTag tag) {
         tag.put("skyblockPos", this.skyblockPos.toTag(new CompoundTag()));
-        
-        final CompoundTag skyblocks = new CompoundTag();
-        this.skyblocksByPlayer.forEach((uuid, skyblock) -> {
-            skyblocks.put(uuid.toString(), skyblock.toTag(new CompoundTag()));
-        });
-        tag.put("skyblocks", skyblocks);
+        tag.putInt("shards", this.shardCount);
+
+        synchronized (this.freeCells) {
+            tag.putIntArray("freeCells", this.freeCells.toIntArray());
+        }
+        // Skyblocks still being built are erased when the world is loaded again, their owners
+        // are not registered yet so they get a new one the next time it is asked for
+        final IntArrayList erasing = new IntArrayList();
+        this.erasing.forEach(job -> erasing.add(job.getIndex()));
+        this.jobs.values().forEach(job -> erasing.add(getIndex(getCell(job.getSkyblock()))));
+        if (this.poolJob != null) {
+            erasing.add(getIndex(getCell(this.poolJob.getSkyblock())));
+        }
+        tag.putIntArray("erasing", erasing.toIntArray());
+        tag.putLongArray("droppedForcedChunks", this.tickets.getDroppedChunks());
+
+        final ListTag pool = new ListTag();
+        for (PooledSkyblock pooled : this.pool) {
+            final CompoundTag entry = new CompoundTag();
+            entry.putLong("spawn", pooled.spawnPos.asLong());
+            entry.putString("template", pooled.template);
+            if (pooled.fingerprint != null) {
+                entry.putInt("fingerprint", pooled.fingerprint);
+            }
+            pool.add(entry);
+        }
+        tag.put("pool", pool);
         return tag;
     }
+
+    private static class PooledSkyblock {
+
+        final BlockPos spawnPos;
+
+        // The skyblock config file it was built from
+        final String template;
+
+        // The template's fingerprint when it was built, null if unknown
+        final Integer fingerprint;
+
+        PooledSkyblock(final BlockPos spawnPos, final String template, final Integer fingerprint) {
+            this.spawnPos = spawnPos;
+            this.template = template;
+            this.fingerprint = fingerprint;
+        }
+
+        boolean isBuiltFrom(final String file, final SkyblockTemplate template) {
+            return this.template.equals(file) && this.fingerprint != null
+                    && this.fingerprint.intValue() == template.getFingerprint();
+        }
+    }
 }
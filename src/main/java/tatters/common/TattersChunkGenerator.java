@@ -17,25 +17,185 @@
  */
 package tatters.common;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+
 import com.mojang.serialization.Codec;
+import com.mojang.serialization.Lifecycle;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
 
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.structure.StructureManager;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.registry.DynamicRegistryManager;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.util.registry.RegistryKey;
+import net.minecraft.util.registry.SimpleRegistry;
+import net.minecraft.world.BlockView;
+import net.minecraft.world.ChunkRegion;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.StructureWorldAccess;
+import net.minecraft.world.WorldAccess;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.biome.BiomeKeys;
+import net.minecraft.world.biome.source.BiomeAccess;
+import net.minecraft.world.biome.source.BiomeSource;
+import net.minecraft.world.biome.source.FixedBiomeSource;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.dimension.DimensionOptions;
+import net.minecraft.world.dimension.DimensionType;
+import net.minecraft.world.gen.GenerationStep;
+import net.minecraft.world.gen.StructureAccessor;
 import net.minecraft.world.gen.chunk.ChunkGenerator;
-import net.minecraft.world.gen.chunk.FlatChunkGenerator;
+import net.minecraft.world.gen.chunk.ChunkGeneratorSettings;
 import net.minecraft.world.gen.chunk.FlatChunkGeneratorConfig;
+import net.minecraft.world.gen.chunk.StructuresConfig;
+import net.minecraft.world.gen.chunk.VerticalBlockSample;
+import net.minecraft.world.gen.feature.StructureFeature;
+import tatters.config.TattersConfig;
 
-public class TattersChunkGenerator extends FlatChunkGenerator {
+// Generates nothing but biomes and an optional platform, every other stage is skipped since the chunks are all air.
+// The flat config is only kept for the biome and so existing worlds still load.
+public class TattersChunkGenerator extends ChunkGenerator {
 
     public static final Codec<TattersChunkGenerator> CODEC;
 
+    private static final VerticalBlockSample EMPTY_COLUMN = new VerticalBlockSample(new BlockState[0]);
+
+    private final FlatChunkGeneratorConfig config;
+
+    // Replaces the biome of the flat config, e.g. for the nether and end
+    private final Optional<BiomeSource> customBiomeSource;
+
+    private final Optional<TattersPlatform> platform;
+
     public TattersChunkGenerator(final FlatChunkGeneratorConfig config) {
-        super(config);
+        this(config, Optional.empty(), Optional.empty());
+    }
+
+    public TattersChunkGenerator(final FlatChunkGeneratorConfig config, final Optional<BiomeSource> customBiomeSource,
+            final Optional<TattersPlatform> platform) {
+        super(customBiomeSource.orElseGet(() -> new FixedBiomeSource(config.getBiome())), config.getStructuresConfig());
+        this.config = config;
+        this.customBiomeSource = customBiomeSource;
+        this.platform = platform;
+    }
+
+    // The vanilla dimensions with the nether and end replaced by void ones when the config asks for it
+    public static SimpleRegistry<DimensionOptions> createDefaultDimensionOptions(final Registry<DimensionType> dimensionTypes,
+            final Registry<Biome> biomeRegistry, final Registry<ChunkGeneratorSettings> noiseSettings, final long seed) {
+        final SimpleRegistry<DimensionOptions> defaults = DimensionType.createDefaultDimensionOptions(dimensionTypes, biomeRegistry, noiseSettings, seed);
+        final TattersConfig config = TattersConfig.getConfig();
+        if (!config.voidNether && !config.voidEnd)
+            return defaults;
+        final SimpleRegistry<DimensionOptions> result = new SimpleRegistry<>(Registry.DIMENSION_OPTIONS, Lifecycle.experimental());
+        for (Map.Entry<RegistryKey<DimensionOptions>, DimensionOptions> entry : defaults.getEntries()) {
+            final RegistryKey<DimensionOptions> key = entry.getKey();
+            DimensionOptions options = entry.getValue();
+            if (key == DimensionOptions.NETHER && config.voidNether) {
+                options = new DimensionOptions(options.getDimensionTypeSupplier(), createVoid(biomeRegistry, BiomeKeys.NETHER_WASTES, config));
+            } else if (key == DimensionOptions.END && config.voidEnd) {
+                options = new DimensionOptions(options.getDimensionTypeSupplier(), createVoid(biomeRegistry, BiomeKeys.THE_END, config));
+            }
+            result.add(key, options, Lifecycle.stable());
+        }
+        return result;
     }
 
+    private static TattersChunkGenerator createVoid(final Registry<Biome> biomeRegistry, final RegistryKey<Biome> biome, final TattersConfig config) {
+        final StructuresConfig structuresConfig = new StructuresConfig(Optional.empty(), Collections.emptyMap());
+        final FlatChunkGeneratorConfig flatConfig = new FlatChunkGeneratorConfig(structuresConfig, biomeRegistry);
+        Optional<TattersPlatform> platform = Optional.empty();
+        if (config.voidPlatformBlock != null && !config.voidPlatformBlock.isEmpty()) {
+            final BlockState block = Registry.BLOCK.get(new Identifier(config.voidPlatformBlock)).getDefaultState();
+            platform = Optional.of(new TattersPlatform(block, config.voidPlatformY, config.voidPlatformRadius));
+        }
+        return new TattersChunkGenerator(flatConfig, Optional.of(new FixedBiomeSource(biomeRegistry.getOrThrow(biome))), platform);
+    }
+
+    public FlatChunkGeneratorConfig getConfig() {
+        return this.config;
+    }
+
+    @Override
     protected Codec<? extends ChunkGenerator> getCodec() {
        return CODEC;
     }
 
+    @Override
+    @Environment(EnvType.CLIENT)
+    public ChunkGenerator withSeed(final long seed) {
+        return this;
+    }
+
+    @Override
+    public void setStructureStarts(final DynamicRegistryManager registryManager, final StructureAccessor accessor,
+            final Chunk chunk, final StructureManager structureManager, final long worldSeed) {
+    }
+
+    @Override
+    public void addStructureReferences(final StructureWorldAccess world, final StructureAccessor accessor, final Chunk chunk) {
+    }
+
+    @Override
+    public void populateNoise(final WorldAccess world, final StructureAccessor accessor, final Chunk chunk) {
+        this.platform.ifPresent(platform -> platform.place(chunk));
+    }
+
+    @Override
+    public void buildSurface(final ChunkRegion region, final Chunk chunk) {
+    }
+
+    @Override
+    public void carve(final long seed, final BiomeAccess access, final Chunk chunk, final GenerationStep.Carver carver) {
+    }
+
+    @Override
+    public void generateFeatures(final ChunkRegion region, final StructureAccessor accessor) {
+    }
+
+    @Override
+    public void populateEntities(final ChunkRegion region) {
+    }
+
+    @Override
+    public BlockPos locateStructure(final ServerWorld world, final StructureFeature<?> feature, final BlockPos center,
+            final int radius, final boolean skipExistingChunks) {
+        return null;
+    }
+
+    @Override
+    public int getHeight(final int x, final int z, final Heightmap.Type heightmapType) {
+        if (this.platform.isPresent() && this.platform.get().contains(x, z))
+            return this.platform.get().getY() + 1;
+        return 0;
+    }
+
+    @Override
+    public BlockView getColumnSample(final int x, final int z) {
+        if (this.platform.isPresent() && this.platform.get().contains(x, z)) {
+            final TattersPlatform platform = this.platform.get();
+            final BlockState[] column = new BlockState[platform.getY() + 1];
+            Arrays.fill(column, Blocks.AIR.getDefaultState());
+            column[platform.getY()] = platform.getBlock();
+            return new VerticalBlockSample(column);
+        }
+        return EMPTY_COLUMN;
+    }
+
     static {
-       CODEC = FlatChunkGeneratorConfig.CODEC.fieldOf("settings").xmap(TattersChunkGenerator::new, TattersChunkGenerator::getConfig).codec();
+       // Worlds saved before the biome source and platform only have the settings
+       CODEC = RecordCodecBuilder.create(instance -> instance.group(
+               FlatChunkGeneratorConfig.CODEC.fieldOf("settings").forGetter(TattersChunkGenerator::getConfig),
+               BiomeSource.CODEC.optionalFieldOf("biome_source").forGetter(generator -> generator.customBiomeSource),
+               TattersPlatform.CODEC.optionalFieldOf("platform").forGetter(generator -> generator.platform))
+               .apply(instance, instance.stable(TattersChunkGenerator::new)));
     }
-}
+}
\ No newline at end of file
@@ -17,43 +17,79 @@
  */
 package tatters.common;
 
+import static net.minecraft.server.command.CommandManager.argument;
 import static net.minecraft.server.command.CommandManager.literal;
-import static tatters.TattersMain.log;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import com.mojang.brigadier.Command;
 import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
 import com.mojang.brigadier.builder.RequiredArgumentBuilder;
 import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import com.mojang.brigadier.exceptions.SimpleCommandExceptionType;
+import com.mojang.brigadier.suggestion.Suggestions;
+import com.mojang.brigadier.suggestion.SuggestionsBuilder;
 
 import net.minecraft.command.EntitySelector;
 import net.minecraft.command.argument.EntityArgumentType;
 import net.minecraft.command.argument.TeamArgumentType;
 import net.minecraft.scoreboard.Team;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.command.CommandManager;
 import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.text.TranslatableText;
+import net.minecraft.util.math.ChunkPos;
 import tatters.TattersMain;
 import tatters.config.TattersConfig;
 
 public class TattersCommand {
 
+    private static final int PAGE_SIZE = 10;
+
+    private static final int MAX_SUGGESTIONS = 50;
+
+    // The help line that is only shown when the load test is enabled
+    private static final int LOAD_TEST_HELP = 11;
+
     public static void register(final CommandDispatcher<ServerCommandSource> dispatcher) {
-        dispatcher.register(literal(TattersMain.MOD_ID).requires((source) -> source.hasPermissionLevel(2))
+        final LiteralArgumentBuilder<ServerCommandSource> command = literal(TattersMain.MOD_ID).requires((source) -> source.hasPermissionLevel(2))
                 .then(literal("help").executes(TattersCommand::help))
                 .then(literal("lobby").executes(TattersCommand::lobby))
                 .then(literal("home").then(playerArgument().executes(TattersCommand::home)))
                 .then(literal("regen").then(playerArgument().executes(TattersCommand::regen)))
+                .then(literal("erase").then(playerArgument().executes(TattersCommand::erase)))
                 .then(literal("visit").then(playerArgument().executes(TattersCommand::visit)))
                 .then(literal("team").then(playerArgument().then(teamArgument().executes(TattersCommand::team))))
-                .then(literal("list").executes(TattersCommand::list))
-                .then(literal("reload").executes(TattersCommand::reload)));
+                .then(literal("list").executes(context -> list(context, 1))
+                        .then(pageArgument().executes(context -> list(context, pageParameter(context)))))
+                .then(literal("find").then(nameArgument().executes(context -> find(context, 1))
+                        .then(pageArgument().executes(context -> find(context, pageParameter(context))))))
+                .then(literal("goto").then(nameArgument().executes(TattersCommand::gotoSkyblock)))
+                .then(literal("whereami").executes(TattersCommand::whereami))
+                .then(literal("stats").executes(TattersCommand::stats))
+                .then(literal("reload").executes(TattersCommand::reload));
+        // Fake players joining would be a bad surprise on a live server
+        if (TattersLoadTest.isEnabled()) {
+            command.then(literal("loadtest")
+                    .then(literal("start").then(argument("players", IntegerArgumentType.integer(1))
+                            .executes(context -> loadTest(context, 1))
+                            .then(argument("joinsPerTick", IntegerArgumentType.integer(1))
+                                    .executes(context -> loadTest(context, IntegerArgumentType.getInteger(context, "joinsPerTick"))))))
+                    .then(literal("stop").executes(TattersCommand::stopLoadTest)));
+        }
+        dispatcher.register(command);
     }
 
     public static int help(final CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
-        for (int i = 0; i < 8; ++i) {
+        for (int i = 0; i < 14; ++i) {
+            if (i == LOAD_TEST_HELP && !TattersLoadTest.isEnabled())
+                continue;
             feedback(context, "tatters.command.help." + i);
         }
         return Command.SINGLE_SUCCESS;
@@ -69,40 +105,154 @@ public class TattersCommand {
         }
     }
 
-    public static int list(final CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+    public static int list(final CommandContext<ServerCommandSource> context, final int page) throws CommandSyntaxException {
         final Skyblocks skyblocks = getSkyblocks(context);
-        for (Skyblock skyblock : skyblocks.listSkyblocks()) {
-            log.info(skyblock.getUUID() + " " + skyblock.getName() + " " + skyblock.getSpawnPos());
+        final SkyblockNameIndex names = skyblocks.getNameIndex();
+        sendPage(context, skyblocks, 0, names.size(), page);
+        return Command.SINGLE_SUCCESS;
+    }
+
+    public static int find(final CommandContext<ServerCommandSource> context, final int page) throws CommandSyntaxException {
+        final Skyblocks skyblocks = getSkyblocks(context);
+        final SkyblockNameIndex names = skyblocks.getNameIndex();
+        final String prefix = nameParameter(context);
+        sendPage(context, skyblocks, names.findFirst(prefix), names.count(prefix), page);
+        return Command.SINGLE_SUCCESS;
+    }
+
+    // One page of the count names starting at the position in the name index
+    private static void sendPage(final CommandContext<ServerCommandSource> context, final Skyblocks skyblocks, final int from,
+            final int count, final int page) {
+        if (count == 0) {
+            feedback(context, "tatters.command.list.empty");
+            return;
+        }
+        final int pages = (count + PAGE_SIZE - 1) / PAGE_SIZE;
+        final int current = Math.min(page, pages);
+        final int start = (current - 1) * PAGE_SIZE;
+        final int size = Math.min(PAGE_SIZE, count - start);
+        feedback(context, "tatters.command.list.page", current, pages, count);
+        for (SkyblockNameIndex.Entry entry : skyblocks.getNameIndex().list(from + start, size)) {
+            final Skyblock skyblock = skyblocks.getSkyblock(entry.getUUID());
+            if (skyblock != null) {
+                feedback(context, "tatters.command.list.entry", entry.getName(), skyblock.getSpawnPos().toShortString());
+            }
+        }
+    }
+
+    public static int gotoSkyblock(final CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        final Skyblocks skyblocks = getSkyblocks(context);
+        final ServerPlayerEntity player = context.getSource().getPlayer();
+        final SkyblockNameIndex.Entry entry = skyblocks.getNameIndex().get(nameParameter(context));
+        final Skyblock skyblock = entry == null ? null : skyblocks.getSkyblock(entry.getUUID());
+        if (skyblock == null) {
+            throw error("tatters.command.noskyblock");
+        }
+        skyblock.teleport(player);
+        return Command.SINGLE_SUCCESS;
+    }
+
+    // Names from the index starting with what has been typed so far
+    public static CompletableFuture<Suggestions> suggestNames(final CommandContext<ServerCommandSource> context,
+            final SuggestionsBuilder builder) {
+        final Skyblocks skyblocks = Skyblocks.getSkyblocks(context.getSource().getWorld());
+        if (skyblocks == null)
+            return builder.buildFuture();
+        final SkyblockNameIndex names = skyblocks.getNameIndex();
+        final String prefix = builder.getRemaining();
+        final int count = Math.min(MAX_SUGGESTIONS, names.count(prefix));
+        for (SkyblockNameIndex.Entry entry : names.list(names.findFirst(prefix), count)) {
+            builder.suggest(StringArgumentType.escapeIfRequired(entry.getName()));
+        }
+        return builder.buildFuture();
+    }
+
+    public static int whereami(final CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        final Skyblocks skyblocks = getSkyblocks(context);
+        final ServerPlayerEntity player = context.getSource().getPlayer();
+        final long cell = skyblocks.getSkyblockPos().getCellAt(player.getBlockPos());
+        final int cellX = ChunkPos.getPackedX(cell);
+        final int cellZ = ChunkPos.getPackedZ(cell);
+        final int index = SkyblockPos.getIndex(cellX, cellZ);
+        final Skyblock skyblock = skyblocks.getSkyblockAt(player.getBlockPos());
+        if (skyblock == null) {
+            feedback(context, "tatters.command.whereami.none", cellX, cellZ, index);
+        } else {
+            feedback(context, "tatters.command.whereami", cellX, cellZ, index, skyblock.getName());
         }
         return Command.SINGLE_SUCCESS;
     }
 
+    public static int stats(final CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        TattersMetrics.METRICS.getCounters().forEach((name, value) -> feedback(context, "tatters.command.stats.counter", name, value));
+        TattersMetrics.METRICS.getHistograms().forEach((name, summary) -> feedback(context, "tatters.command.stats.histogram", name,
+                summary.getCount(), format(summary.getMean()), format(summary.getP50()), format(summary.getP99()),
+                format(summary.getMax()), summary.getUnit()));
+        return Command.SINGLE_SUCCESS;
+    }
+
+    private static String format(final double value) {
+        return String.format("%.2f", value);
+    }
+
+    public static int loadTest(final CommandContext<ServerCommandSource> context, final int joinsPerTick)
+            throws CommandSyntaxException {
+        final Skyblocks skyblocks = getSkyblocks(context);
+        final int players = IntegerArgumentType.getInteger(context, "players");
+        final TattersLoadTest running = skyblocks.getLoadTest();
+        if (running != null) {
+            feedback(context, "tatters.command.loadtest.running", running.getFinished(), running.getPlayers());
+            return 0;
+        }
+        skyblocks.startLoadTest(players, joinsPerTick);
+        feedback(context, "tatters.command.loadtest.started", players, joinsPerTick);
+        return Command.SINGLE_SUCCESS;
+    }
+
+    public static int stopLoadTest(final CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        final TattersLoadTest running = getSkyblocks(context).getLoadTest();
+        if (running == null) {
+            throw error("tatters.command.loadtest.none");
+        }
+        running.stop();
+        feedback(context, "tatters.command.loadtest.stopped");
+        return Command.SINGLE_SUCCESS;
+    }
+
     public static int lobby(final CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
         final Skyblocks skyblocks = getSkyblocks(context);
         final ServerPlayerEntity player = context.getSource().getPlayer();
         final Skyblock lobby = skyblocks.getLobby();
-        teleport(lobby, player);
+        lobby.teleport(player);
         return Command.SINGLE_SUCCESS;
     }
 
     public static int home(final CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
         final Skyblocks skyblocks = getSkyblocks(context);
         final ServerPlayerEntity player = playerParameter(context);
-        Skyblock skyblock = skyblocks.getSkyblock(player);
+        final Skyblock skyblock = skyblocks.getSkyblock(player);
         if (skyblock == null) {
-            skyblock = skyblocks.createSkyblock(player);
-            skyblock.setPlayerSpawn(player);
+            whenCreated(context, skyblocks.createSkyblockAsync(player), player);
+            return Command.SINGLE_SUCCESS;
         }
-        teleport(skyblock, player);
+        skyblock.teleport(player);
         return Command.SINGLE_SUCCESS;
     }
 
     public static int regen(final CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
         final Skyblocks skyblocks = getSkyblocks(context);
         final ServerPlayerEntity player = playerParameter(context);
-        final Skyblock skyblock = skyblocks.createSkyblock(player);
-        skyblock.setPlayerSpawn(player);
-        teleport(skyblock, player);
+        whenCreated(context, skyblocks.createSkyblockAsync(player), player);
+        return Command.SINGLE_SUCCESS;
+    }
+
+    public static int erase(final CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        final Skyblocks skyblocks = getSkyblocks(context);
+        final ServerPlayerEntity player = playerParameter(context);
+        if (!skyblocks.removeSkyblock(player.getUuid())) {
+            throw error("tatters.command.noskyblock");
+        }
+        feedback(context, "tatters.command.erased");
         return Command.SINGLE_SUCCESS;
     }
 
@@ -114,7 +264,7 @@ public class TattersCommand {
         if (skyblock == null) {
             throw error("tatters.command.noskyblock");
         }
-        teleport(skyblock, player);
+        skyblock.teleport(player);
         return Command.SINGLE_SUCCESS;
     }
 
@@ -122,13 +272,14 @@ public class TattersCommand {
         final Skyblocks skyblocks = getSkyblocks(context);
         final ServerPlayerEntity player = playerParameter(context);
         final Team team = teamParameter(context);
-        Skyblock skyblock = skyblocks.getSkyblock(team);
+        final Skyblock skyblock = skyblocks.getSkyblock(team);
+        skyblocks.getWorld().getScoreboard().addPlayerToTeam(player.getEntityName(), team);
         if (skyblock == null) {
-            skyblock = skyblocks.createSkyblock(team);
+            whenCreated(context, skyblocks.createSkyblockAsync(team), player);
+            return Command.SINGLE_SUCCESS;
         }
-        skyblocks.getWorld().getScoreboard().addPlayerToTeam(player.getEntityName(), team);
         skyblock.setPlayerSpawn(player);
-        teleport(skyblock, player);
+        skyblock.teleport(player);
         return Command.SINGLE_SUCCESS;
     }
 
@@ -141,11 +292,25 @@ public class TattersCommand {
         return skyblocks;
     }
 
-    public static void teleport(final Skyblock skyblock, final ServerPlayerEntity player)
-            throws CommandSyntaxException {
-        if (!skyblock.teleport(player)) {
-            throw error("tatters.command.noteleport");
-        }
+    // Sets the player's spawn and teleports them once the skyblock has been placed
+    public static void whenCreated(final CommandContext<ServerCommandSource> context, final SkyblockJob job,
+            final ServerPlayerEntity player) {
+        feedback(context, "tatters.command.creating");
+        final UUID uuid = player.getUuid();
+        final MinecraftServer server = context.getSource().getMinecraftServer();
+        job.addWatcher(uuid);
+        job.getFuture().whenComplete((skyblock, error) -> {
+            if (error != null) {
+                context.getSource().sendError(new TranslatableText("tatters.command.error"));
+                return;
+            }
+            // The player might have respawned or logged out while waiting
+            final ServerPlayerEntity current = server.getPlayerManager().getPlayer(uuid);
+            if (current == null)
+                return;
+            skyblock.setPlayerSpawn(current);
+            skyblock.teleport(current);
+        });
     }
 
     public static RequiredArgumentBuilder<ServerCommandSource, EntitySelector> playerArgument() {
@@ -157,6 +322,22 @@ public class TattersCommand {
         return EntityArgumentType.getPlayer(context, "player");
     }
 
+    public static RequiredArgumentBuilder<ServerCommandSource, String> nameArgument() {
+        return CommandManager.argument("name", StringArgumentType.string()).suggests(TattersCommand::suggestNames);
+    }
+
+    public static String nameParameter(final CommandContext<ServerCommandSource> context) {
+        return StringArgumentType.getString(context, "name");
+    }
+
+    public static RequiredArgumentBuilder<ServerCommandSource, Integer> pageArgument() {
+        return CommandManager.argument("page", IntegerArgumentType.integer(1));
+    }
+
+    public static int pageParameter(final CommandContext<ServerCommandSource> context) {
+        return IntegerArgumentType.getInteger(context, "page");
+    }
+
     public static RequiredArgumentBuilder<ServerCommandSource, String> teamArgument() {
         return CommandManager.argument("team", TeamArgumentType.team());
     }
@@ -169,6 +350,11 @@ public class TattersCommand {
         feedback(context, feedback, false);
     }
 
+    public static void feedback(final CommandContext<ServerCommandSource> context, final String feedback,
+            final Object... args) {
+        context.getSource().sendFeedback(new TranslatableText(feedback, args), false);
+    }
+
     public static void feedbackOps(final CommandContext<ServerCommandSource> context, final String feedback) {
         feedback(context, feedback, true);
     }
@@ -0,0 +1,80 @@
+/*
+ * This file is part of Tatters.
+ * Copyright (c) 2021, warjort and others, All rights reserved.
+ *
+ * Tatters is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tatters is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Tatters.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package tatters.common;
+
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.world.World;
+import tatters.config.TattersConfig;
+
+// The tatters state of a server world, resolved once so the per entity and per command checks are field reads
+public class TattersContext {
+
+    private final ServerWorld world;
+
+    private final boolean tattersWorld;
+
+    private Skyblocks skyblocks = null;
+
+    // The config for this tick, captured at the end of the previous one so the per entity and
+    // per chunk paths do not go through the shared reference
+    private TattersConfig config = null;
+
+    public TattersContext(final ServerWorld world) {
+        this.world = world;
+        this.tattersWorld = world.getChunkManager().getChunkGenerator() instanceof TattersChunkGenerator
+                && world.getRegistryKey().equals(World.OVERWORLD);
+    }
+
+    public static TattersContext get(final ServerWorld world) {
+        return ((TattersWorld) world).tatters_getContext();
+    }
+
+    public boolean isTattersWorld() {
+        return this.tattersWorld;
+    }
+
+    // null when this is not a tatters world
+    public Skyblocks getSkyblocks() {
+        if (!this.tattersWorld)
+            return null;
+        if (this.skyblocks == null) {
+            this.skyblocks = Skyblocks.load(this.world);
+        }
+        return this.skyblocks;
+    }
+
+    // False for things in islands without an online member that skip this tick
+    public boolean shouldTick(final int blockX, final int blockZ) {
+        if (!this.tattersWorld)
+            return true;
+        return getSkyblocks().shouldTick(blockX, blockZ);
+    }
+
+    // The snapshot captured for this tick, a reload is seen from the next one
+    public TattersConfig getConfig() {
+        if (this.config == null) {
+            this.config = TattersConfig.getConfig();
+        }
+        return this.config;
+    }
+
+    // Called at the end of every world tick of a tatters world, before the skyblocks tick
+    public void captureConfig() {
+        this.config = TattersConfig.getConfig();
+    }
+}
\ No newline at end of file
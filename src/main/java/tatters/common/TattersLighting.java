@@ -0,0 +1,33 @@
+/*
+ * This file is part of Tatters.
+ * Copyright (c) 2021, warjort and others, All rights reserved.
+ *
+ * Tatters is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tatters is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Tatters.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package tatters.common;
+
+import java.util.concurrent.CompletableFuture;
+
+import it.unimi.dsi.fastutil.longs.LongList;
+
+// Added to ServerLightingProvider by ServerLightingProviderMixin
+public interface TattersLighting {
+
+    // Queues one light task for the chunk that checks all the packed block positions,
+    // rather than one task per block like checkBlock(). The list must not change afterwards.
+    void tatters_checkBlocks(int chunkX, int chunkZ, LongList positions);
+
+    // Completes on the light thread once the light tasks already queued for the chunk have run
+    CompletableFuture<Void> tatters_whenLightUpdated(int chunkX, int chunkZ);
+}
\ No newline at end of file
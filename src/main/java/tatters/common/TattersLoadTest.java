@@ -0,0 +1,411 @@
+/*
+ * This file is part of Tatters.
+ * Copyright (c) 2021, warjort and others, All rights reserved.
+ *
+ * Tatters is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tatters is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Tatters.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package tatters.common;
+
+import static tatters.TattersMain.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import com.google.common.collect.Lists;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.mojang.authlib.GameProfile;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.network.ClientConnection;
+import net.minecraft.network.NetworkSide;
+import net.minecraft.scoreboard.Scoreboard;
+import net.minecraft.scoreboard.Team;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.network.ServerPlayerInteractionManager;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.LiteralText;
+
+// Simulates a join storm with fake players that connect through the normal login path, so the same world
+// hooks run as for real players. Each one runs "home" or "team" and later "visit", the tick times, creation
+// latencies and heap use are written to a report in the server directory. Only meant for a throwaway world,
+// the fake players get player data files and islands like real ones.
+public class TattersLoadTest {
+
+    // The load test is only available in a development environment or with -Dtatters.loadTest=true
+    public static final String ENABLED_PROPERTY = "tatters.loadTest";
+
+    // Started when the server loads the world, e.g. -Dtatters.loadTest.players=500, the server stops afterwards
+    public static final String PLAYERS_PROPERTY = "tatters.loadTest.players";
+
+    public static final String JOINS_PER_TICK_PROPERTY = "tatters.loadTest.joinsPerTick";
+
+    private static final String NAME_PREFIX = "loadtest_";
+
+    // Team names are limited to 16 characters, this leaves room for 7 digits like the player names
+    private static final String TEAM_PREFIX = "loadteam_";
+
+    // Every nth player joins a team instead of getting their own skyblock
+    private static final int TEAM_EVERY = 5;
+
+    private static final int TEAM_SIZE = 4;
+
+    // Ticks between a player's skyblock being ready and them visiting another one
+    private static final int VISIT_DELAY = 100;
+
+    // Give up this many ticks after the last join
+    private static final int TIMEOUT_TICKS = 20 * 60 * 5;
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+
+    // The system properties only start one load test
+    private static boolean fromProperties = false;
+
+    private final Skyblocks skyblocks;
+
+    private final int players;
+
+    private final int joinsPerTick;
+
+    private final boolean stopServer;
+
+    private final Random random = new Random(0L);
+
+    private final List<FakePlayer> fakePlayers = Lists.newArrayList();
+
+    private final List<FakePlayer> ready = Lists.newArrayList();
+
+    private final DoubleArrayList tickMillis = new DoubleArrayList();
+
+    private final LongArrayList heapBytes = new LongArrayList();
+
+    private final DoubleArrayList createMillis = new DoubleArrayList();
+
+    private final long startMillis = System.currentTimeMillis();
+
+    private final long startHeap = usedHeap();
+
+    private int ticks = 0;
+
+    private int finished = 0;
+
+    private int failed = 0;
+
+    private boolean done = false;
+
+    TattersLoadTest(final Skyblocks skyblocks, final int players, final int joinsPerTick, final boolean stopServer) {
+        this.skyblocks = skyblocks;
+        this.players = players;
+        this.joinsPerTick = Math.max(1, joinsPerTick);
+        this.stopServer = stopServer;
+        log.info("Starting load test with " + players + " players, " + this.joinsPerTick + " joins per tick");
+    }
+
+    // Starting one from the properties also counts as enabling it
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY) || System.getProperty(PLAYERS_PROPERTY) != null
+                || FabricLoader.getInstance().isDevelopmentEnvironment();
+    }
+
+    static TattersLoadTest fromProperties(final Skyblocks skyblocks) {
+        if (fromProperties)
+            return null;
+        fromProperties = true;
+        final Integer players = Integer.getInteger(PLAYERS_PROPERTY);
+        if (players == null)
+            return null;
+        return new TattersLoadTest(skyblocks, players, Integer.getInteger(JOINS_PER_TICK_PROPERTY, 1), true);
+    }
+
+    public int getPlayers() {
+        return this.players;
+    }
+
+    public boolean isDone() {
+        return this.done;
+    }
+
+    public int getJoined() {
+        return this.fakePlayers.size();
+    }
+
+    public int getFinished() {
+        return this.finished;
+    }
+
+    // Run from the skyblocks tick on the server thread
+    void tick() {
+        if (this.done)
+            return;
+        final MinecraftServer server = this.skyblocks.getWorld().getServer();
+        ++this.ticks;
+        // The current tick is still running, so this is the length of the previous one
+        this.tickMillis.add(server.lastTickLengths[(server.getTicks() + 99) % 100] / 1000000.0D);
+        this.heapBytes.add(usedHeap());
+
+        for (int i = 0; i < this.joinsPerTick && this.fakePlayers.size() < this.players; ++i) {
+            join(server, this.fakePlayers.size());
+        }
+        for (FakePlayer fakePlayer : this.fakePlayers) {
+            fakePlayer.tick(server);
+        }
+        final boolean allJoined = this.fakePlayers.size() >= this.players;
+        if (allJoined && this.finished >= this.players) {
+            finish(server, false);
+        } else if (allJoined && this.ticks - this.players / this.joinsPerTick > TIMEOUT_TICKS) {
+            finish(server, true);
+        }
+    }
+
+    public void stop() {
+        if (!this.done) {
+            finish(this.skyblocks.getWorld().getServer(), true);
+        }
+    }
+
+    private void join(final MinecraftServer server, final int index) {
+        final String name = NAME_PREFIX + index;
+        final GameProfile profile = new GameProfile(UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8)), name);
+        final ServerWorld world = this.skyblocks.getWorld();
+        final ServerPlayerEntity player = new ServerPlayerEntity(server, world, profile, new ServerPlayerInteractionManager(world));
+        // Registering the connection with the channel activates it, the packets sent to the player are thrown away
+        final ClientConnection connection = new ClientConnection(NetworkSide.SERVERBOUND);
+        new EmbeddedChannel(new DiscardPackets(), connection);
+        final FakePlayer fakePlayer = new FakePlayer(index, name);
+        this.fakePlayers.add(fakePlayer);
+        server.getPlayerManager().onPlayerConnect(connection, player);
+    }
+
+    private void finish(final MinecraftServer server, final boolean timedOut) {
+        this.done = true;
+        final File file = new File(server.getRunDirectory(),
+                "tatters-loadtest-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date(this.startMillis)) + ".json");
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            GSON.toJson(new Report(this, timedOut), writer);
+            log.info("Load test " + (timedOut ? "stopped" : "finished") + ", report written to " + file);
+        } catch (IOException e) {
+            log.error("Unable to write the load test report: " + file, e);
+        }
+        for (FakePlayer fakePlayer : this.fakePlayers) {
+            final ServerPlayerEntity player = fakePlayer.getPlayer(server);
+            if (player != null) {
+                player.networkHandler.onDisconnected(new LiteralText("Load test finished"));
+            }
+        }
+        if (this.stopServer) {
+            server.stop(false);
+        }
+    }
+
+    private void run(final MinecraftServer server, final ServerPlayerEntity player, final String command) {
+        server.getCommandManager().execute(player.getCommandSource().withLevel(2).withSilent(), command);
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private class FakePlayer {
+
+        private final int index;
+
+        private final String name;
+
+        private final long joinNanos = System.nanoTime();
+
+        private final String team;
+
+        private int readyTick = -1;
+
+        private boolean started = false;
+
+        private boolean visited = false;
+
+        FakePlayer(final int index, final String name) {
+            this.index = index;
+            this.name = name;
+            this.team = index % TEAM_EVERY == 0 ? TEAM_PREFIX + index / (TEAM_EVERY * TEAM_SIZE) : null;
+        }
+
+        ServerPlayerEntity getPlayer(final MinecraftServer server) {
+            return server.getPlayerManager().getPlayer(this.name);
+        }
+
+        void tick(final MinecraftServer server) {
+            if (this.visited)
+                return;
+            final ServerPlayerEntity player = getPlayer(server);
+            if (player == null) {
+                // Kicked or failed to join
+                this.visited = true;
+                ++TattersLoadTest.this.failed;
+                ++TattersLoadTest.this.finished;
+                return;
+            }
+            // What the network handler would do each tick for a real player
+            player.playerTick();
+            if (!this.started) {
+                this.started = true;
+                if (this.team == null) {
+                    run(server, player, "tatters home " + this.name);
+                } else {
+                    createTeam(server.getScoreboard());
+                    run(server, player, "tatters team " + this.name + " " + this.team);
+                }
+                return;
+            }
+            if (this.readyTick < 0) {
+                final Skyblock skyblock = this.team == null ? TattersLoadTest.this.skyblocks.getSkyblock(player)
+                        : TattersLoadTest.this.skyblocks.getSkyblock(server.getScoreboard().getTeam(this.team));
+                if (skyblock == null)
+                    return;
+                this.readyTick = TattersLoadTest.this.ticks;
+                TattersLoadTest.this.createMillis.add((System.nanoTime() - this.joinNanos) / 1000000.0D);
+                TattersLoadTest.this.ready.add(this);
+                return;
+            }
+            if (TattersLoadTest.this.ticks - this.readyTick < VISIT_DELAY)
+                return;
+            final List<FakePlayer> ready = TattersLoadTest.this.ready;
+            final FakePlayer toVisit = ready.get(TattersLoadTest.this.random.nextInt(ready.size()));
+            run(server, player, "tatters visit " + toVisit.name);
+            this.visited = true;
+            ++TattersLoadTest.this.finished;
+        }
+
+        private void createTeam(final Scoreboard scoreboard) {
+            if (scoreboard.getTeam(this.team) == null) {
+                scoreboard.addTeam(this.team);
+            }
+        }
+    }
+
+    // Completes the writes so nothing queues up in the channel
+    private static class DiscardPackets extends ChannelOutboundHandlerAdapter {
+
+        @Override
+        public void write(final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise) {
+            ReferenceCountUtil.release(msg);
+            promise.setSuccess();
+        }
+    }
+
+    // Written with gson, times are in milliseconds and the heap in MiB
+    private static class Report {
+
+        final String started;
+
+        final boolean timedOut;
+
+        final int players;
+
+        final int joinsPerTick;
+
+        final int ticks;
+
+        final int created;
+
+        final int failed;
+
+        final Stats mspt;
+
+        final Stats createLatency;
+
+        final double heapStart;
+
+        final double heapPeak;
+
+        final double heapEnd;
+
+        final double[] tickMillis;
+
+        final double[] heap;
+
+        Report(final TattersLoadTest test, final boolean timedOut) {
+            this.started = new Date(test.startMillis).toString();
+            this.timedOut = timedOut;
+            this.players = test.players;
+            this.joinsPerTick = test.joinsPerTick;
+            this.ticks = test.ticks;
+            this.created = test.createMillis.size();
+            this.failed = test.failed;
+            this.mspt = new Stats(test.tickMillis.toDoubleArray());
+            this.createLatency = new Stats(test.createMillis.toDoubleArray());
+            this.heapStart = toMiB(test.startHeap);
+            long peak = test.startHeap;
+            this.heap = new double[test.heapBytes.size()];
+            for (int i = 0; i < this.heap.length; ++i) {
+                peak = Math.max(peak, test.heapBytes.getLong(i));
+                this.heap[i] = toMiB(test.heapBytes.getLong(i));
+            }
+            this.heapPeak = toMiB(peak);
+            this.heapEnd = toMiB(usedHeap());
+            this.tickMillis = test.tickMillis.toDoubleArray();
+        }
+
+        private static double toMiB(final long bytes) {
+            return bytes / (1024.0D * 1024.0D);
+        }
+    }
+
+    private static class Stats {
+
+        final int count;
+
+        final double mean;
+
+        final double p50;
+
+        final double p95;
+
+        final double p99;
+
+        final double max;
+
+        Stats(final double[] values) {
+            final double[] sorted = values.clone();
+            Arrays.sort(sorted);
+            this.count = sorted.length;
+            this.mean = sorted.length == 0 ? 0.0D : Arrays.stream(sorted).sum() / sorted.length;
+            this.p50 = percentile(sorted, 0.5D);
+            this.p95 = percentile(sorted, 0.95D);
+            this.p99 = percentile(sorted, 0.99D);
+            this.max = sorted.length == 0 ? 0.0D : sorted[sorted.length - 1];
+        }
+
+        private static double percentile(final double[] sorted, final double percentile) {
+            if (sorted.length == 0)
+                return 0.0D;
+            return sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * percentile) - 1)];
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,219 @@
+/*
+ * This file is part of Tatters.
+ * Copyright (c) 2021, warjort and others, All rights reserved.
+ *
+ * Tatters is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tatters is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Tatters.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package tatters.common;
+
+import static tatters.TattersMain.log;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.ObjectName;
+
+import com.google.common.collect.Maps;
+
+// Counters and histograms for the skyblock operations. Recording only adds to LongAdders so it stays cheap
+// on the server thread, the stripes are summed when the values are read by /tatters stats or JMX.
+public class TattersMetrics implements TattersMetricsMXBean {
+
+    public static final TattersMetrics METRICS = new TattersMetrics();
+
+    private static final double NANOS_PER_MILLI = 1000000.0D;
+
+    // Before the fields below, they add themselves in their initializers
+    private final Map<String, Histogram> histograms = Maps.newLinkedHashMap();
+
+    private final Map<String, LongAdder> counters = Maps.newLinkedHashMap();
+
+    // Template lookup and grid allocation, the templates are compiled when the config is loaded
+    public final Histogram createResolve = histogram("create.resolve", NANOS_PER_MILLI, "ms");
+
+    // Time spent placing blocks, summed over the ticks the island took
+    public final Histogram createPlace = histogram("create.place", NANOS_PER_MILLI, "ms");
+
+    // From the request until the island is ready, including waiting for later ticks
+    public final Histogram createTotal = histogram("create.total", NANOS_PER_MILLI, "ms");
+
+    public final Histogram teleport = histogram("teleport", NANOS_PER_MILLI, "ms");
+
+    public final Histogram reload = histogram("reload", NANOS_PER_MILLI, "ms");
+
+    public final Histogram saveDuration = histogram("save.duration", NANOS_PER_MILLI, "ms");
+
+    public final Histogram saveSize = histogram("save.size", 1024.0D, "KiB");
+
+    public final LongAdder createFailed = counter("create.failed");
+
+    public final LongAdder createPooled = counter("create.pooled");
+
+    public final LongAdder teleportTimeouts = counter("teleport.timeouts");
+
+    public final LongAdder reloadFailed = counter("reload.failed");
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(METRICS, new ObjectName("tatters:type=Metrics"));
+        } catch (Exception e) {
+            log.warn("Unable to register the tatters metrics with JMX", e);
+        }
+    }
+
+    private TattersMetrics() {
+    }
+
+    private Histogram histogram(final String name, final double scale, final String unit) {
+        final Histogram result = new Histogram(scale, unit);
+        this.histograms.put(name, result);
+        return result;
+    }
+
+    private LongAdder counter(final String name) {
+        final LongAdder result = new LongAdder();
+        this.counters.put(name, result);
+        return result;
+    }
+
+    // Only records states that are actually written
+    public void recordSave(final long nanos, final long bytes) {
+        this.saveDuration.record(nanos);
+        this.saveSize.record(bytes);
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        final Map<String, Long> result = Maps.newLinkedHashMap();
+        this.counters.forEach((name, counter) -> result.put(name, counter.sum()));
+        return Collections.unmodifiableMap(result);
+    }
+
+    @Override
+    public Map<String, Summary> getHistograms() {
+        final Map<String, Summary> result = Maps.newLinkedHashMap();
+        this.histograms.forEach((name, histogram) -> result.put(name, histogram.summarize()));
+        return Collections.unmodifiableMap(result);
+    }
+
+    // Power of two buckets, so the percentiles are within a factor of two
+    public static class Histogram {
+
+        // Bucket b holds the values with b significant bits, bucket 0 is for 0
+        private final LongAdder[] buckets = new LongAdder[64];
+
+        private final LongAdder sum = new LongAdder();
+
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+        private final double scale;
+
+        private final String unit;
+
+        Histogram(final double scale, final String unit) {
+            for (int i = 0; i < this.buckets.length; ++i) {
+                this.buckets[i] = new LongAdder();
+            }
+            this.scale = scale;
+            this.unit = unit;
+        }
+
+        public void record(final long value) {
+            final long clamped = Math.max(0L, value);
+            this.buckets[64 - Long.numberOfLeadingZeros(clamped)].increment();
+            this.sum.add(clamped);
+            this.max.accumulate(clamped);
+        }
+
+        // The upper bound of the bucket holding the percentile
+        private long getPercentile(final long[] counts, final long total, final double percentile) {
+            final long rank = (long) Math.ceil(total * percentile);
+            long seen = 0L;
+            for (int b = 0; b < counts.length; ++b) {
+                seen += counts[b];
+                if (seen >= rank)
+                    return b == 0 ? 0L : b >= 63 ? Long.MAX_VALUE : (1L << b) - 1L;
+            }
+            return this.max.get();
+        }
+
+        Summary summarize() {
+            final long[] counts = new long[this.buckets.length];
+            long total = 0L;
+            for (int b = 0; b < counts.length; ++b) {
+                counts[b] = this.buckets[b].sum();
+                total += counts[b];
+            }
+            if (total == 0L)
+                return new Summary(0L, 0.0D, 0.0D, 0.0D, 0.0D, this.unit);
+            final long max = this.max.get();
+            // Never report a bucket bound above the largest value seen
+            return new Summary(total, this.sum.sum() / (double) total / this.scale,
+                    Math.min(getPercentile(counts, total, 0.5D), max) / this.scale,
+                    Math.min(getPercentile(counts, total, 0.99D), max) / this.scale, max / this.scale, this.unit);
+        }
+    }
+
+    // A point in time copy of a histogram, in its display unit
+    public static class Summary {
+
+        private final long count;
+
+        private final double mean;
+
+        private final double p50;
+
+        private final double p99;
+
+        private final double max;
+
+        private final String unit;
+
+        Summary(final long count, final double mean, final double p50, final double p99, final double max, final String unit) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.max = max;
+            this.unit = unit;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        public double getMean() {
+            return this.mean;
+        }
+
+        public double getP50() {
+            return this.p50;
+        }
+
+        public double getP99() {
+            return this.p99;
+        }
+
+        public double getMax() {
+            return this.max;
+        }
+
+        public String getUnit() {
+            return this.unit;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,74 @@
+/*
+ * This file is part of Tatters.
+ * Copyright (c) 2021, warjort and others, All rights reserved.
+ *
+ * Tatters is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tatters is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Tatters.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package tatters.common;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.chunk.Chunk;
+
+// A small square of blocks around 0, 0 in an otherwise empty dimension
+public class TattersPlatform {
+
+    public static final Codec<TattersPlatform> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+            BlockState.CODEC.fieldOf("block").forGetter(platform -> platform.block),
+            Codec.INT.fieldOf("y").forGetter(platform -> platform.y),
+            Codec.INT.fieldOf("radius").forGetter(platform -> platform.radius))
+            .apply(instance, instance.stable(TattersPlatform::new)));
+
+    private final BlockState block;
+
+    private final int y;
+
+    private final int radius;
+
+    public TattersPlatform(final BlockState block, final int y, final int radius) {
+        this.block = block;
+        this.y = y;
+        this.radius = radius;
+    }
+
+    public BlockState getBlock() {
+        return this.block;
+    }
+
+    public int getY() {
+        return this.y;
+    }
+
+    public boolean contains(final int x, final int z) {
+        return Math.abs(x) <= this.radius && Math.abs(z) <= this.radius;
+    }
+
+    void place(final Chunk chunk) {
+        final ChunkPos chunkPos = chunk.getPos();
+        final int minX = Math.max(chunkPos.getStartX(), -this.radius);
+        final int maxX = Math.min(chunkPos.getEndX(), this.radius);
+        final int minZ = Math.max(chunkPos.getStartZ(), -this.radius);
+        final int maxZ = Math.min(chunkPos.getEndZ(), this.radius);
+        final BlockPos.Mutable pos = new BlockPos.Mutable();
+        for (int x = minX; x <= maxX; ++x) {
+            for (int z = minZ; z <= maxZ; ++z) {
+                chunk.setBlockState(pos.set(x, this.y, z), this.block, false);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -17,10 +17,12 @@
  */
 package tatters.config;
 
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -30,14 +32,23 @@ import tatters.TattersMain;
 
 public class Config {
     protected static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
-    protected static final Path CONFIG_DIR = FabricLoader.getInstance().getConfigDir().resolve(TattersMain.MOD_ID).normalize();
+    protected static final Path CONFIG_DIR = getConfigDir();
+
+    // The tatters.configDir system property is for running outside the game, e.g. the benchmarks
+    private static Path getConfigDir() {
+        final String configDir = System.getProperty(TattersMain.MOD_ID + ".configDir");
+        if (configDir != null && !configDir.isEmpty()) {
+            return Paths.get(configDir).toAbsolutePath().normalize();
+        }
+        return FabricLoader.getInstance().getConfigDir().resolve(TattersMain.MOD_ID).normalize();
+    }
 
     protected static Path getConfigFile(final String name) {
         return CONFIG_DIR.resolve(name).normalize();
     }
 
     protected static <T> T readFile(final Path file, final Class<T> type) {
-        try (final InputStreamReader reader = new InputStreamReader(Files.newInputStream(file))) {
+        try (final BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
             return GSON.fromJson(reader, type);
         } catch (Exception e) {
             throw new RuntimeException("Error reading file: " + file, e);
@@ -46,7 +57,7 @@ public class Config {
 
     protected static void writeFile(final Path file, final Object object) {
         mkdirs(file.getParent());
-        try (final OutputStreamWriter writer = new OutputStreamWriter(Files.newOutputStream(file))) {
+        try (final BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
             GSON.toJson(object, writer);
         } catch (Exception e) {
             throw new RuntimeException("Error writing file: " + file, e);
@@ -0,0 +1,111 @@
+/*
+ * This file is part of Tatters.
+ * Copyright (c) 2021, warjort and others, All rights reserved.
+ *
+ * Tatters is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tatters is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Tatters.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package tatters.config;
+
+import static tatters.TattersMain.log;
+
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+// Reloads the config on a background thread when the files in config/tatters change
+class ConfigWatcher implements Runnable {
+
+    // Wait for the files to stop changing before reloading
+    private static final long QUIET_MILLIS = 500L;
+
+    private static ConfigWatcher instance = null;
+
+    private final WatchService watchService;
+
+    private final Thread thread;
+
+    static synchronized void setEnabled(final boolean enabled) {
+        if (enabled && instance == null) {
+            instance = new ConfigWatcher();
+            instance.thread.start();
+            log.info("Watching for changes in " + Config.CONFIG_DIR);
+        } else if (!enabled && instance != null) {
+            instance.close();
+            instance = null;
+        }
+    }
+
+    private ConfigWatcher() {
+        try {
+            this.watchService = Config.CONFIG_DIR.getFileSystem().newWatchService();
+            register(Config.CONFIG_DIR);
+            register(SkyblockConfig.SKYBLOCKS_DIR);
+        } catch (Exception e) {
+            throw new RuntimeException("Error watching: " + Config.CONFIG_DIR, e);
+        }
+        this.thread = new Thread(this, "Tatters config watcher");
+        this.thread.setDaemon(true);
+    }
+
+    private void register(final Path dir) throws Exception {
+        dir.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+    }
+
+    private void close() {
+        try {
+            this.watchService.close();
+        } catch (Exception e) {
+            log.warn("Error closing config watcher", e);
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                boolean changed = drain(this.watchService.take());
+                WatchKey key;
+                while ((key = this.watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= drain(key);
+                }
+                if (changed) {
+                    TattersConfig.reloadInBackground();
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Stopped
+        } catch (RuntimeException e) {
+            log.error("Unexpected error in config watcher, changes will no longer be picked up", e);
+        }
+    }
+
+    // Returns true if a config file changed
+    private static boolean drain(final WatchKey key) {
+        boolean result = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                result = true;
+            } else if (SkyblockConfig.isSkyblockFile(event.context().toString())) {
+                result = true;
+            }
+        }
+        key.reset();
+        return result;
+    }
+}
\ No newline at end of file
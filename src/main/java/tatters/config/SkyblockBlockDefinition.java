@@ -25,14 +25,11 @@ import com.mojang.brigadier.StringReader;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
-import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.StringNbtReader;
-import net.minecraft.server.world.ServerWorld;
 import net.minecraft.state.StateManager;
 import net.minecraft.state.property.Property;
 import net.minecraft.util.Identifier;
-import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.registry.Registry;
 
 public class SkyblockBlockDefinition {
@@ -43,6 +40,8 @@ public class SkyblockBlockDefinition {
 
     private transient BlockState blockState;
 
+    private transient CompoundTag nbtTag;
+
     public String block;
 
     public Map<String, String> properties = null;
@@ -58,27 +57,20 @@ public class SkyblockBlockDefinition {
 
     public void validate() {
         parseBlockState();
-        parseNBT();
+        getNBT();
     }
 
-    public void placeBlock(final ServerWorld world, final BlockPos pos) {
-        try {
-            parseBlockState();
-            world.setBlockState(pos.toImmutable(), this.blockState);
-            if (this.nbt != null) {
-                final BlockEntity blockEntity = world.getBlockEntity(pos);
-                if (blockEntity == null)
-                    throw new IllegalArgumentException(this.block + " has no block entity for nbt: " + nbt);
-                final CompoundTag tag = parseNBT();
-                tag.putInt("x", pos.getX());
-                tag.putInt("y", pos.getY());
-                tag.putInt("z", pos.getZ());
-                blockEntity.fromTag(this.blockState, tag);
-                blockEntity.markDirty();
-            }
-        } catch (Exception e) {
-            throw new RuntimeException("Error placing block: " + this.block, e);
+    public BlockState getBlockState() {
+        parseBlockState();
+        return this.blockState;
+    }
+
+    // The parsed nbt is shared, callers should copy it before modifying it
+    public CompoundTag getNBT() {
+        if (this.nbt != null && this.nbtTag == null) {
+            this.nbtTag = parseNBT();
         }
+        return this.nbtTag;
     }
 
     private void parseBlockState() {
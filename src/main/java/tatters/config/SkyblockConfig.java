@@ -19,24 +19,48 @@ package tatters.config;
 
 import static tatters.TattersMain.log;
 
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
+import net.fabricmc.loader.api.FabricLoader;
+import net.fabricmc.loader.api.ModContainer;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtIo;
 import tatters.TattersMain;
 
 public class SkyblockConfig extends Config {
 
     private static final List<List<String>> DEFAULT_LAYERS = Collections.emptyList();
 
-    private static final Path SKYBLOCKS_DIR = CONFIG_DIR.resolve("skyblocks");
-    private static Map<String, String> skyblockConfigs = Maps.newConcurrentMap();
+    // The number of load times reported at info level
+    private static final int SLOWEST_TIMINGS = 5;
+
+    // Vanilla structure files saved with a structure block, used as they are instead of a json definition
+    static final String STRUCTURE_EXTENSION = ".nbt";
+
+    static final Path SKYBLOCKS_DIR = CONFIG_DIR.resolve("skyblocks");
+
+    // The skyblocks in use, only replaced once a reload has been validated
+    private static volatile Loaded loaded = new Loaded(Maps.newConcurrentMap(), Maps.newConcurrentMap());
 
     public final String enabledComment = "Set to false to not load this skyblock";
     public boolean enabled = true;
@@ -89,25 +113,56 @@ public class SkyblockConfig extends Config {
         }
     }
 
+    // Should only be called after validate()
+    public SkyblockTemplate compile() {
+        return SkyblockTemplate.compile(this);
+    }
+
     static SkyblockConfig getSkyblockConfig(final String name) {
-        final Path file = SKYBLOCKS_DIR.resolve(name);
-        final SkyblockConfig result = readFile(file, SkyblockConfig.class);
-        if (!result.enabled)
-            throw new IllegalStateException("Tried to load disabled skyblock: " + name);
-        result.validate();
+        return loaded.getConfig(name);
+    }
+
+    static SkyblockTemplate getSkyblockTemplate(final String name) {
+        return loaded.getTemplate(name);
+    }
+
+    // Reading the palette is the validation, so structures are compiled straight away
+    private static CachedSkyblock loadStructure(final Path file, final String name, final BasicFileAttributes attributes) {
+        final CompoundTag tag;
+        try (InputStream input = Files.newInputStream(file)) {
+            tag = NbtIo.readCompressed(input);
+        } catch (Exception e) {
+            throw new RuntimeException("Error reading file: " + file, e);
+        }
+        final SkyblockConfig config = new SkyblockConfig();
+        config.name = name;
+        final CachedSkyblock result = new CachedSkyblock(config, attributes);
+        result.template = SkyblockTemplate.compileStructure(name, tag);
         return result;
     }
 
+    static boolean isStructure(final String fileName) {
+        return fileName.endsWith(STRUCTURE_EXTENSION);
+    }
+
+    static boolean isSkyblockFile(final String fileName) {
+        return fileName.endsWith(".json") || isStructure(fileName);
+    }
+
     public Map<String, String> getSkyblockConfigs() {
-        return Collections.unmodifiableMap(skyblockConfigs);
+        return Collections.unmodifiableMap(loaded.names);
     }
 
-    static void copySkyblocks() {
+    static void copySkyblocks(final int threads) {
         mkdirs(SKYBLOCKS_DIR);
 
-        final Path skyblocks = TattersMain.getModContainer().getPath("assets/tatters/skyblocks");
+        // Nothing to copy when running outside the game, e.g. the benchmarks
+        final Optional<ModContainer> container = FabricLoader.getInstance().getModContainer(TattersMain.MOD_ID);
+        if (!container.isPresent())
+            return;
+        final Path skyblocks = container.get().getPath("assets/tatters/skyblocks");
         try {
-            Files.list(skyblocks).filter(path -> path.getFileName().toString().endsWith(".json")).forEach(path -> {
+            forEachFile(skyblocks, name -> name.endsWith(".json"), threads, path -> {
                 try {
                     final Path destination = SKYBLOCKS_DIR.resolve(path.getFileName().toString());
                     if (!Files.exists(destination)) {
@@ -125,28 +180,179 @@ public class SkyblockConfig extends Config {
         }
     }
 
-    static void loadSkyblocks() {
-        final Map<String, String> map = Maps.newConcurrentMap();
+    // Reads the skyblock files without changing the ones in use, see publish(). Files that have not changed
+    // since the current skyblocks were loaded are reused unless reuse is false.
+    static Loaded loadSkyblocks(final int threads, final boolean reuse) {
+        final long start = System.nanoTime();
+        final Map<String, CachedSkyblock> cache = Maps.newConcurrentMap();
+        if (reuse) {
+            cache.putAll(loaded.cache);
+        }
+        final Loaded result = new Loaded(Maps.newConcurrentMap(), cache);
+        final Map<String, Long> timings = Maps.newConcurrentMap();
         try {
-            Files.list(SKYBLOCKS_DIR).filter(path -> path.getFileName().toString().endsWith(".json")).forEach(path -> {
+            forEachFile(SKYBLOCKS_DIR, SkyblockConfig::isSkyblockFile, threads, path -> {
+                final long fileStart = System.nanoTime();
+                final String pathName = path.getFileName().toString();
                 try {
-                    final SkyblockConfig skyblock = readFile(path, SkyblockConfig.class);
-                    if (skyblock.enabled) {
-                        final String pathName = path.getFileName().toString();
-                        skyblock.validate();
-                        if (skyblock.name == null || skyblock.name.isEmpty()) {
-                            skyblock.name = pathName;
-                        }
-                        map.put(pathName, skyblock.name);
+                    final CachedSkyblock skyblock = result.load(pathName);
+                    if (skyblock != null) {
+                        result.names.put(pathName, skyblock.config.name);
                     }
                 } catch (Exception e) {
                     log.warn("Not loading: " + path, e);
                 }
+                timings.put(pathName, System.nanoTime() - fileStart);
             });
-            skyblockConfigs = map;
         }
         catch (Exception e) {
             throw new RuntimeException("Error loading skyblocks", e);
         }
+        // Forget deleted and broken files
+        cache.keySet().retainAll(result.names.keySet());
+        logTimings(result.names.size(), timings, System.nanoTime() - start);
+        return result;
+    }
+
+    // Makes the skyblocks the ones in use, after the config that refers to them has been validated
+    static void publish(final Loaded skyblocks) {
+        loaded = skyblocks;
+    }
+
+    // Runs the action for each matching file name in the directory on a bounded number of threads,
+    // the action handles its own errors so one bad file does not stop the others
+    private static void forEachFile(final Path dir, final Predicate<String> names, final int threads, final Consumer<Path> action)
+            throws Exception {
+        final List<Path> files;
+        try (Stream<Path> stream = Files.list(dir)) {
+            files = stream.filter(path -> names.test(path.getFileName().toString())).collect(Collectors.toList());
+        }
+        final int poolSize = Math.min(threads, files.size());
+        if (poolSize < 2) {
+            files.forEach(action);
+            return;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(poolSize, runnable -> {
+            final Thread thread = new Thread(runnable, "Tatters skyblock loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            final List<Future<?>> futures = Lists.newArrayListWithCapacity(files.size());
+            for (Path file : files) {
+                futures.add(executor.submit(() -> action.accept(file)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // The slowest files at info, all of them at debug
+    private static void logTimings(final int loaded, final Map<String, Long> timings, final long total) {
+        log.info(String.format("Loaded %d of %d skyblocks in %.1fms", loaded, timings.size(), total / 1000000.0D));
+        final List<Map.Entry<String, Long>> entries = Lists.newArrayList(timings.entrySet());
+        entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        for (int i = 0; i < entries.size(); ++i) {
+            final Map.Entry<String, Long> entry = entries.get(i);
+            final String message = String.format("  %s %.1fms", entry.getKey(), entry.getValue() / 1000000.0D);
+            if (i < SLOWEST_TIMINGS) {
+                log.info(message);
+            } else {
+                log.debug(message);
+            }
+        }
+    }
+
+    // The skyblock files found by one load
+    static class Loaded {
+
+        // File name -> display name
+        private final Map<String, String> names;
+
+        // Parsed and validated skyblocks by file name, reread when the file's modification time or size changes
+        private final Map<String, CachedSkyblock> cache;
+
+        Loaded(final Map<String, String> names, final Map<String, CachedSkyblock> cache) {
+            this.names = names;
+            this.cache = cache;
+        }
+
+        SkyblockConfig getConfig(final String name) {
+            return getCached(name).config;
+        }
+
+        SkyblockTemplate getTemplate(final String name) {
+            return getCached(name).getTemplate();
+        }
+
+        private CachedSkyblock getCached(final String name) {
+            final CachedSkyblock result = load(name);
+            if (result == null)
+                throw new IllegalStateException("Tried to load disabled skyblock: " + name);
+            return result;
+        }
+
+        // Returns null for a disabled skyblock
+        private CachedSkyblock load(final String name) {
+            final Path file = SKYBLOCKS_DIR.resolve(name);
+            final BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (Exception e) {
+                throw new RuntimeException("Error reading file: " + file, e);
+            }
+            final CachedSkyblock cached = this.cache.get(name);
+            if (cached != null && cached.isCurrent(attributes))
+                return cached;
+            if (isStructure(name)) {
+                final CachedSkyblock entry = loadStructure(file, name, attributes);
+                this.cache.put(name, entry);
+                return entry;
+            }
+            final SkyblockConfig result = readFile(file, SkyblockConfig.class);
+            if (!result.enabled) {
+                this.cache.remove(name);
+                return null;
+            }
+            result.validate();
+            if (result.name == null || result.name.isEmpty()) {
+                result.name = name;
+            }
+            final CachedSkyblock entry = new CachedSkyblock(result, attributes);
+            this.cache.put(name, entry);
+            return entry;
+        }
+    }
+
+    private static class CachedSkyblock {
+
+        final SkyblockConfig config;
+
+        final FileTime lastModified;
+
+        final long size;
+
+        private SkyblockTemplate template;
+
+        CachedSkyblock(final SkyblockConfig config, final BasicFileAttributes attributes) {
+            this.config = config;
+            this.lastModified = attributes.lastModifiedTime();
+            this.size = attributes.size();
+        }
+
+        boolean isCurrent(final BasicFileAttributes attributes) {
+            return this.lastModified.equals(attributes.lastModifiedTime()) && this.size == attributes.size();
+        }
+
+        // Only compiled for the skyblocks that are actually used
+        synchronized SkyblockTemplate getTemplate() {
+            if (this.template == null) {
+                this.template = this.config.compile();
+            }
+            return this.template;
+        }
     }
-}
+}
\ No newline at end of file
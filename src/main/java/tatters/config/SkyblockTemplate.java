@@ -0,0 +1,417 @@
+/*
+ * This file is part of Tatters.
+ * Copyright (c) 2021, warjort and others, All rights reserved.
+ *
+ * Tatters is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tatters is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Tatters.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package tatters.config;
+
+import static tatters.TattersMain.log;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.LongFunction;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.mojang.datafixers.util.Pair;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import net.minecraft.block.BlockEntityProvider;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.datafixer.DataFixTypes;
+import net.minecraft.datafixer.Schemas;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.NbtHelper;
+import net.minecraft.network.packet.s2c.play.ChunkDataS2CPacket;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.WorldChunk;
+import net.minecraft.world.chunk.light.LightingProvider;
+import net.minecraft.world.poi.PointOfInterestType;
+import tatters.common.TattersLighting;
+
+// A skyblock config resolved into block states and parsed nbt, built once and reused for every island
+public class SkyblockTemplate {
+
+    private static final Heightmap.Type[] HEIGHTMAPS = { Heightmap.Type.MOTION_BLOCKING,
+            Heightmap.Type.MOTION_BLOCKING_NO_LEAVES, Heightmap.Type.OCEAN_FLOOR, Heightmap.Type.WORLD_SURFACE };
+
+    // The metadata of a DATA mode structure block that marks the spawn point in a structure file
+    public static final String SPAWN_MARKER = "spawn";
+
+    // Send to clients (they also get the chunk refresh) but no neighbour updates or reactions
+    private static final int BULK_FLAGS = 2 | 16;
+
+    private final String name;
+
+    // Indexed by the states array
+    private final BlockState[] palette;
+
+    private final CompoundTag[] nbts;
+
+    // Block entities and points of interest are always placed through the world
+    private final boolean[] perBlock;
+
+    // Relative to the origin of the skyblock, packed with BlockPos.asLong()
+    private final long[] positions;
+
+    private final int[] states;
+
+    private final long spawnOffset;
+
+    // Changes when the blocks that get placed change, the same for the same file across restarts
+    private final int fingerprint;
+
+    SkyblockTemplate(final String name, final BlockState[] palette, final CompoundTag[] nbts, final long[] positions,
+            final int[] states, final long spawnOffset) {
+        this.name = name;
+        this.palette = palette;
+        this.nbts = nbts;
+        this.positions = positions;
+        this.states = states;
+        this.spawnOffset = spawnOffset;
+        this.fingerprint = fingerprint(palette, nbts, positions, states, spawnOffset);
+        this.perBlock = new boolean[palette.length];
+        for (int i = 0; i < palette.length; ++i) {
+            this.perBlock[i] = palette[i].getBlock() instanceof BlockEntityProvider || nbts[i] != null
+                    || PointOfInterestType.from(palette[i]).isPresent();
+        }
+    }
+
+    // Block states hash by identity, so they are hashed by their nbt form instead
+    private static int fingerprint(final BlockState[] palette, final CompoundTag[] nbts, final long[] positions,
+            final int[] states, final long spawnOffset) {
+        int result = Arrays.hashCode(positions);
+        result = 31 * result + Arrays.hashCode(states);
+        for (int i = 0; i < palette.length; ++i) {
+            result = 31 * result + NbtHelper.fromBlockState(palette[i]).hashCode();
+            result = 31 * result + Objects.hashCode(nbts[i]);
+        }
+        return 31 * result + Long.hashCode(spawnOffset);
+    }
+
+    static SkyblockTemplate compile(final SkyblockConfig config) {
+        final Map<Character, Integer> paletteIndex = Maps.newHashMap();
+        final BlockState[] palette = new BlockState[config.mapping.size()];
+        final CompoundTag[] nbts = new CompoundTag[config.mapping.size()];
+        config.mapping.forEach((key, definition) -> {
+            final int index = paletteIndex.size();
+            paletteIndex.put(key, index);
+            palette[index] = definition.getBlockState();
+            nbts[index] = definition.getNBT();
+        });
+
+        final LongArrayList positions = new LongArrayList();
+        final IntArrayList states = new IntArrayList();
+        final List<List<String>> layers = config.layers;
+        Long spawnOffset = null;
+        for (int y = 0; y < layers.size(); ++y) {
+            final List<String> layer = layers.get(y);
+            for (int row = 0; row < layer.size(); ++row) {
+                final String columns = layer.get(row);
+                final int x = layer.size() / 2 - row;
+                for (int column = 0; column < columns.length(); ++column) {
+                    final char c = columns.charAt(column);
+                    final int z = column - columns.length() / 2;
+                    if (c == '!') {
+                        if (spawnOffset != null) {
+                            log.warn("Duplicate spawn points defined for " + config.name);
+                        } else {
+                            spawnOffset = BlockPos.asLong(x, y, z);
+                        }
+                    }
+                    // Air blocks are not placed, the skyblock grid is empty
+                    final Integer index = paletteIndex.get(c);
+                    if (index == null)
+                        continue;
+                    positions.add(BlockPos.asLong(x, y, z));
+                    states.add(index.intValue());
+                }
+            }
+        }
+        if (spawnOffset == null) {
+            spawnOffset = BlockPos.asLong(0, layers.size(), 0);
+        }
+        return new SkyblockTemplate(config.name, palette, nbts, positions.toLongArray(), states.toIntArray(), spawnOffset);
+    }
+
+    // Structure files are updated to the current version first, the blocks are centred on the origin like the layers.
+    // Air, structure voids and DATA mode structure blocks are not placed, entities are ignored.
+    static SkyblockTemplate compileStructure(final String name, final CompoundTag structure) {
+        final int dataVersion = structure.contains("DataVersion", 99) ? structure.getInt("DataVersion") : 500;
+        final CompoundTag tag = NbtHelper.update(Schemas.getFixer(), DataFixTypes.STRUCTURE, structure, dataVersion);
+        final ListTag size = tag.getList("size", 3);
+        if (size.size() != 3)
+            throw new IllegalArgumentException("Not a structure file, no size: " + name);
+        final int sizeX = size.getInt(0);
+        final int sizeY = size.getInt(1);
+        final int sizeZ = size.getInt(2);
+
+        // Structures with random variants have several palettes, only the first is used
+        final ListTag paletteTag = tag.contains("palettes", 9) ? tag.getList("palettes", 9).getList(0) : tag.getList("palette", 10);
+        final BlockState[] structurePalette = new BlockState[paletteTag.size()];
+        for (int i = 0; i < structurePalette.length; ++i) {
+            final CompoundTag entry = paletteTag.getCompound(i);
+            // toBlockState() quietly turns unknown blocks into air
+            final Identifier identifier = new Identifier(entry.getString("Name"));
+            if (!Registry.BLOCK.containsId(identifier))
+                throw new IllegalArgumentException("Unknown block: " + identifier + " in " + name);
+            structurePalette[i] = NbtHelper.toBlockState(entry);
+        }
+
+        // Blocks with nbt get their own palette entry
+        final Map<Pair<BlockState, CompoundTag>, Integer> paletteIndex = Maps.newHashMap();
+        final List<BlockState> palette = Lists.newArrayList();
+        final List<CompoundTag> nbts = Lists.newArrayList();
+        final LongArrayList positions = new LongArrayList();
+        final IntArrayList states = new IntArrayList();
+        Long spawnOffset = null;
+        final ListTag blocks = tag.getList("blocks", 10);
+        for (int i = 0; i < blocks.size(); ++i) {
+            final CompoundTag block = blocks.getCompound(i);
+            final int state = block.getInt("state");
+            if (state < 0 || state >= structurePalette.length)
+                throw new IllegalArgumentException("Invalid palette index: " + state + " in " + name);
+            final BlockState blockState = structurePalette[state];
+            final CompoundTag nbt = block.contains("nbt", 10) ? block.getCompound("nbt") : null;
+            final ListTag pos = block.getList("pos", 3);
+            final long offset = BlockPos.asLong(pos.getInt(0) - sizeX / 2, pos.getInt(1), pos.getInt(2) - sizeZ / 2);
+            if (blockState.isOf(Blocks.STRUCTURE_BLOCK) && nbt != null && "DATA".equals(nbt.getString("mode"))) {
+                if (SPAWN_MARKER.equals(nbt.getString("metadata"))) {
+                    if (spawnOffset != null) {
+                        log.warn("Duplicate spawn points defined for " + name);
+                    } else {
+                        spawnOffset = offset;
+                    }
+                }
+                continue;
+            }
+            if (blockState.isAir() || blockState.isOf(Blocks.STRUCTURE_VOID))
+                continue;
+            Integer index = paletteIndex.get(Pair.of(blockState, nbt));
+            if (index == null) {
+                index = palette.size();
+                paletteIndex.put(Pair.of(blockState, nbt), index);
+                palette.add(blockState);
+                nbts.add(nbt);
+            }
+            positions.add(offset);
+            states.add(index.intValue());
+        }
+        if (positions.isEmpty())
+            throw new IllegalArgumentException("No blocks defined in structure: " + name);
+        if (spawnOffset == null) {
+            spawnOffset = BlockPos.asLong(0, sizeY, 0);
+        }
+        return new SkyblockTemplate(name, palette.toArray(new BlockState[0]), nbts.toArray(new CompoundTag[0]),
+                positions.toLongArray(), states.toIntArray(), spawnOffset);
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public int getFingerprint() {
+        return this.fingerprint;
+    }
+
+    public int size() {
+        return this.positions.length;
+    }
+
+    public BlockPos getSpawnPos(final BlockPos origin) {
+        return origin.add(BlockPos.unpackLongX(this.spawnOffset), BlockPos.unpackLongY(this.spawnOffset), BlockPos.unpackLongZ(this.spawnOffset));
+    }
+
+    public void place(final ServerWorld world, final BlockPos origin) {
+        place(world, origin, 0, size());
+    }
+
+    // Places the blocks [from, to) so the work can be split up
+    public void place(final ServerWorld world, final BlockPos origin, final int from, final int to) {
+        final BlockPos.Mutable pos = new BlockPos.Mutable();
+        for (int i = from; i < to; ++i) {
+            final long offset = this.positions[i];
+            pos.set(origin.getX() + BlockPos.unpackLongX(offset), origin.getY() + BlockPos.unpackLongY(offset),
+                    origin.getZ() + BlockPos.unpackLongZ(offset));
+            placeBlock(world, pos, this.states[i], 3);
+        }
+    }
+
+    // Writes the blocks [from, to) directly into the chunk sections without neighbour updates
+    // then sends one refresh per chunk, the light engine processes the queued checks as a single batch
+    public void placeBulk(final ServerWorld world, final BlockPos origin, final int from, final int to) {
+        final Long2ObjectMap<WorldChunk> chunks = new Long2ObjectOpenHashMap<>();
+        placeBulk(world, origin, from, to, chunks);
+        refreshChunks(world, chunks.values());
+    }
+
+    // As above but the touched chunks are only collected, so work split over several calls
+    // can refresh each chunk once with refreshChunks()
+    public void placeBulk(final ServerWorld world, final BlockPos origin, final int from, final int to, final Long2ObjectMap<WorldChunk> chunks) {
+        final IntArrayList deferred = writeSections(origin, from, to, chunkKey -> {
+            WorldChunk chunk = chunks.get(chunkKey);
+            if (chunk == null) {
+                chunk = world.getChunk(ChunkPos.getPackedX(chunkKey), ChunkPos.getPackedZ(chunkKey));
+                chunks.put(chunkKey, chunk);
+            }
+            return chunk;
+        }, world.getChunkManager().getLightingProvider());
+
+        // Anything that needs the world to do extra work, placed after the plain blocks it might rely on
+        final BlockPos.Mutable pos = new BlockPos.Mutable();
+        for (int j = 0; j < deferred.size(); ++j) {
+            final int i = deferred.getInt(j);
+            final long offset = this.positions[i];
+            pos.set(origin.getX() + BlockPos.unpackLongX(offset), origin.getY() + BlockPos.unpackLongY(offset),
+                    origin.getZ() + BlockPos.unpackLongZ(offset));
+            placeBlock(world, pos, this.states[i], BULK_FLAGS);
+        }
+    }
+
+    // Marks the chunks written by placeBulk() for saving and sends them to the players watching them
+    public static void refreshChunks(final ServerWorld world, final Collection<WorldChunk> chunks) {
+        for (WorldChunk chunk : chunks) {
+            chunk.setShouldSave(true);
+            final ChunkDataS2CPacket packet = new ChunkDataS2CPacket(chunk, 65535);
+            world.getChunkManager().threadedAnvilChunkStorage.getPlayersWatchingChunk(chunk.getPos(), false)
+                    .forEach(player -> player.networkHandler.sendPacket(packet));
+        }
+    }
+
+    // The section writes of placeBulk(), chunks are looked up by their packed ChunkPos and the lighting is optional
+    // so this can also run against chunks that are not in a world. Returns the indexes that have to go through the world.
+    IntArrayList writeSections(final BlockPos origin, final int from, final int to, final LongFunction<? extends Chunk> chunks,
+            final LightingProvider lighting) {
+        final IntArrayList deferred = new IntArrayList();
+        final BlockPos.Mutable pos = new BlockPos.Mutable();
+        long lastChunkKey = Long.MAX_VALUE;
+        Chunk chunk = null;
+        // The light checks are queued as one task per chunk when the lighting supports it
+        final Long2ObjectMap<LongList> lightChecks = lighting instanceof TattersLighting ? new Long2ObjectOpenHashMap<>() : null;
+        LongList chunkLightChecks = null;
+        for (int i = from; i < to; ++i) {
+            final int index = this.states[i];
+            if (this.perBlock[index]) {
+                deferred.add(i);
+                continue;
+            }
+            final long offset = this.positions[i];
+            pos.set(origin.getX() + BlockPos.unpackLongX(offset), origin.getY() + BlockPos.unpackLongY(offset),
+                    origin.getZ() + BlockPos.unpackLongZ(offset));
+            if (World.isOutOfBuildLimitVertically(pos))
+                continue;
+            // Consecutive blocks are usually in the same chunk
+            final long chunkKey = ChunkPos.toLong(pos.getX() >> 4, pos.getZ() >> 4);
+            if (chunkKey != lastChunkKey) {
+                chunk = chunks.apply(chunkKey);
+                lastChunkKey = chunkKey;
+                if (lightChecks != null) {
+                    chunkLightChecks = lightChecks.computeIfAbsent(chunkKey, key -> new LongArrayList());
+                }
+            }
+            final BlockState blockState = this.palette[index];
+            final ChunkSection[] sections = chunk.getSectionArray();
+            final int sectionY = pos.getY() >> 4;
+            ChunkSection section = sections[sectionY];
+            if (section == WorldChunk.EMPTY_SECTION) {
+                section = new ChunkSection(sectionY << 4);
+                sections[sectionY] = section;
+            }
+            final boolean wasEmpty = section.isEmpty();
+            final int x = pos.getX() & 15;
+            final int y = pos.getY();
+            final int z = pos.getZ() & 15;
+            section.setBlockState(x, y & 15, z, blockState);
+            for (Heightmap.Type type : HEIGHTMAPS) {
+                chunk.getHeightmap(type).trackUpdate(x, y, z, blockState);
+            }
+            if (lighting != null) {
+                if (wasEmpty != section.isEmpty()) {
+                    lighting.setSectionStatus(pos, section.isEmpty());
+                }
+                if (chunkLightChecks != null) {
+                    chunkLightChecks.add(pos.asLong());
+                } else {
+                    lighting.checkBlock(pos);
+                }
+            }
+        }
+        if (lightChecks != null) {
+            for (Long2ObjectMap.Entry<LongList> entry : lightChecks.long2ObjectEntrySet()) {
+                final long chunkKey = entry.getLongKey();
+                ((TattersLighting) lighting).tatters_checkBlocks(ChunkPos.getPackedX(chunkKey), ChunkPos.getPackedZ(chunkKey), entry.getValue());
+            }
+        }
+        return deferred;
+    }
+
+    // The per block baseline for writeSections(), every block goes through Chunk.setBlockState()
+    // like the world does for place(), block entities are not created
+    void setBlockStates(final BlockPos origin, final int from, final int to, final LongFunction<? extends Chunk> chunks) {
+        final BlockPos.Mutable pos = new BlockPos.Mutable();
+        for (int i = from; i < to; ++i) {
+            final long offset = this.positions[i];
+            pos.set(origin.getX() + BlockPos.unpackLongX(offset), origin.getY() + BlockPos.unpackLongY(offset),
+                    origin.getZ() + BlockPos.unpackLongZ(offset));
+            if (World.isOutOfBuildLimitVertically(pos))
+                continue;
+            chunks.apply(ChunkPos.toLong(pos.getX() >> 4, pos.getZ() >> 4)).setBlockState(pos, this.palette[this.states[i]], false);
+        }
+    }
+
+    private void placeBlock(final ServerWorld world, final BlockPos.Mutable pos, final int index, final int flags) {
+        final BlockState blockState = this.palette[index];
+        try {
+            if (this.perBlock[index] == false) {
+                world.setBlockState(pos, blockState, flags);
+                return;
+            }
+            final BlockPos blockPos = pos.toImmutable();
+            world.setBlockState(blockPos, blockState, flags);
+            final CompoundTag nbt = this.nbts[index];
+            if (nbt != null) {
+                final BlockEntity blockEntity = world.getBlockEntity(blockPos);
+                if (blockEntity == null)
+                    throw new IllegalArgumentException(blockState + " has no block entity for nbt: " + nbt);
+                final CompoundTag tag = nbt.copy();
+                tag.putInt("x", blockPos.getX());
+                tag.putInt("y", blockPos.getY());
+                tag.putInt("z", blockPos.getZ());
+                blockEntity.fromTag(blockState, tag);
+                blockEntity.markDirty();
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Error placing block: " + blockState + " for " + this.name, e);
+        }
+    }
+}
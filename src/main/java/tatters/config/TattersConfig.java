@@ -21,13 +21,21 @@ import static tatters.TattersMain.log;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
 
+import net.minecraft.util.Identifier;
+import net.minecraft.util.registry.Registry;
 import tatters.TattersMain;
+import tatters.common.TattersMetrics;
 
 public class TattersConfig extends Config {
 
     private static final String CONFIG_FILE_NAME = TattersMain.MOD_ID + ".json";
-    private static TattersConfig CONFIG = loadConfig();
+    private static final AtomicReference<TattersConfig> CONFIG = new AtomicReference<>(loadConfig());
+
+    static {
+        publish(CONFIG.get());
+    }
 
     public final String spacingComment = "The size of the skyblock grid";
     public int spacing = 1000;
@@ -36,61 +44,193 @@ public class TattersConfig extends Config {
     public final String defaultYComment = "The height of the bottom block of the skyblock";
     public int defaultY = 80;
 
-    public final String skyblockComment = "The name of the skyblock to use by default";
+    public final String skyblockComment = "The name of the skyblock to use by default, a .json definition or a .nbt structure file";
     public String skyblock = "default.json";
 
     public final String lobbyComment = "The name of the config to use for the lobby, no value means use the skyblock config";
     public String lobby = "";
 
+    public final String bulkPlacementComment = "Write skyblock blocks directly into the chunks with one refresh per chunk, set to false to place them one at a time";
+    public boolean bulkPlacement = true;
+
+    public final String createBlocksPerTickComment = "The maximum number of blocks placed per tick when creating skyblocks";
+    public int createBlocksPerTick = 4096;
+
+    public final String createMicrosPerTickComment = "The maximum time in microseconds spent per tick creating skyblocks";
+    public int createMicrosPerTick = 5000;
+
+    public final String poolSizeComment = "The number of skyblocks to build in advance for new players, 0 disables the pool";
+    public int poolSize = 0;
+
+    public final String poolMaxMsptComment = "Only build pooled skyblocks while the average tick time in milliseconds is below this";
+    public float poolMaxMspt = 25.0F;
+
+    public final String teleportChunkRadiusComment = "The radius in chunks around the skyblock spawn that is loaded before teleporting a player";
+    public int teleportChunkRadius = 1;
+
+    public final String teleportTimeoutTicksComment = "The maximum number of ticks to wait for the chunks to load before teleporting anyway";
+    public int teleportTimeoutTicks = 100;
+
+    public final String eraseAbandonedComment = "Erase the chunks of abandoned skyblocks in the background before reusing their place in the grid, otherwise they are left as they are and their place is not reused";
+    public boolean eraseAbandoned = true;
+
+    public final String eraseChunkRadiusComment = "The radius in chunks around an abandoned skyblock that is erased, limited by the spacing, -1 erases the whole grid cell";
+    public int eraseChunkRadius = -1;
+
+    public final String eraseChunksPerTickComment = "The number of chunks erased per tick";
+    public int eraseChunksPerTick = 2;
+
+    public final String islandTicketRadiusComment = "The radius in chunks around an island's spawn kept loaded while a member is online, 0 leaves it to the players' view distance";
+    public int islandTicketRadius = 2;
+
+    public final String islandIdleSecondsComment = "How long an island stays loaded after its last member goes offline";
+    public int islandIdleSeconds = 300;
+
+    public final String dropIdleForcedChunksComment = "Unforce forced chunks (chunk loaders) in islands whose members have been offline for islandIdleSeconds";
+    public boolean dropIdleForcedChunks = true;
+
+    public final String idleTickDivisorComment = "Islands without an online member tick entities, block entities and random ticks every this many ticks, 1 is normal speed, 0 freezes them";
+    public int idleTickDivisor = 1;
+
+    public final String voidNetherComment = "Use a void generator for the nether in new worlds";
+    public boolean voidNether = false;
+
+    public final String voidEndComment = "Use a void generator for the end in new worlds";
+    public boolean voidEnd = false;
+
+    public final String voidPlatformBlockComment = "The block for the platform at 0, 0 in the void nether and end, no value means no platform";
+    public String voidPlatformBlock = "minecraft:obsidian";
+
+    public final String voidPlatformYComment = "The height of the platform in the void nether and end";
+    public int voidPlatformY = 64;
+
+    public final String voidPlatformRadiusComment = "The radius of the platform in the void nether and end";
+    public int voidPlatformRadius = 2;
+
+    public final String watchConfigComment = "Reload the config in the background when the files in config/tatters change";
+    public boolean watchConfig = false;
+
+    public final String loadThreadsComment = "The number of threads used to load and validate the skyblock files";
+    public int loadThreads = 4;
+
+    private transient SkyblockTemplate skyblockTemplate;
+
+    private transient SkyblockTemplate lobbyTemplate;
+
+    // The skyblock files this config was validated against
+    private transient SkyblockConfig.Loaded skyblocks;
+
     public static final TattersConfig getConfig() {
-        return CONFIG;
+        return CONFIG.get();
     }
 
-    private void validate() {
+    private void validate(final SkyblockConfig.Loaded skyblocks) {
         if (this.spacing < 32)
             throw new IllegalArgumentException(CONFIG_FILE_NAME + " spacing=" + spacing + " should be at least 32");
         // TODO figure out a way to parameterise these values that works on 1.16 and 1.17 with the expanded block range
         if (this.defaultY < 1 || this.defaultY > 255)
             throw new IllegalArgumentException(CONFIG_FILE_NAME + " defaultY=" + defaultY + " should be between 1 and 255");
-        getSkyblockConfig();
+        if (this.createBlocksPerTick < 1)
+            throw new IllegalArgumentException(CONFIG_FILE_NAME + " createBlocksPerTick=" + createBlocksPerTick + " should be at least 1");
+        if (this.createMicrosPerTick < 1)
+            throw new IllegalArgumentException(CONFIG_FILE_NAME + " createMicrosPerTick=" + createMicrosPerTick + " should be at least 1");
+        if (this.poolSize < 0)
+            throw new IllegalArgumentException(CONFIG_FILE_NAME + " poolSize=" + poolSize + " should not be negative");
+        if (this.teleportChunkRadius < 0 || this.teleportChunkRadius > 8)
+            throw new IllegalArgumentException(CONFIG_FILE_NAME + " teleportChunkRadius=" + teleportChunkRadius + " should be between 0 and 8");
+        if (this.eraseChunkRadius < -1)
+            throw new IllegalArgumentException(CONFIG_FILE_NAME + " eraseChunkRadius=" + eraseChunkRadius + " should be -1 or more");
+        if (this.eraseChunksPerTick < 1)
+            throw new IllegalArgumentException(CONFIG_FILE_NAME + " eraseChunksPerTick=" + eraseChunksPerTick + " should be at least 1");
+        if (this.islandTicketRadius < 0 || this.islandTicketRadius > 8)
+            throw new IllegalArgumentException(CONFIG_FILE_NAME + " islandTicketRadius=" + islandTicketRadius + " should be between 0 and 8");
+        if (this.islandIdleSeconds < 0)
+            throw new IllegalArgumentException(CONFIG_FILE_NAME + " islandIdleSeconds=" + islandIdleSeconds + " should not be negative");
+        if (this.idleTickDivisor < 0)
+            throw new IllegalArgumentException(CONFIG_FILE_NAME + " idleTickDivisor=" + idleTickDivisor + " should not be negative");
+        if (this.voidPlatformBlock != null && !this.voidPlatformBlock.isEmpty()
+                && !Registry.BLOCK.getOrEmpty(new Identifier(this.voidPlatformBlock)).isPresent())
+            throw new IllegalArgumentException(CONFIG_FILE_NAME + " voidPlatformBlock=" + voidPlatformBlock + " is not a known block");
+        if (this.voidPlatformY < 0 || this.voidPlatformY > 255)
+            throw new IllegalArgumentException(CONFIG_FILE_NAME + " voidPlatformY=" + voidPlatformY + " should be between 0 and 255");
+        if (this.voidPlatformRadius < 0 || this.voidPlatformRadius > 16)
+            throw new IllegalArgumentException(CONFIG_FILE_NAME + " voidPlatformRadius=" + voidPlatformRadius + " should be between 0 and 16");
+        if (this.loadThreads < 1)
+            throw new IllegalArgumentException(CONFIG_FILE_NAME + " loadThreads=" + loadThreads + " should be at least 1");
+        this.skyblockTemplate = skyblocks.getTemplate(this.skyblock);
         if (this.lobby != null && !lobby.isEmpty()) {
-            getLobbyConfig();
+            this.lobbyTemplate = skyblocks.getTemplate(this.lobby);
+        } else {
+            this.lobbyTemplate = this.skyblockTemplate;
         }
+        this.skyblocks = skyblocks;
     }
 
-    public SkyblockConfig getSkyblockConfig() {
-        return SkyblockConfig.getSkyblockConfig(this.skyblock);
+    public SkyblockTemplate getSkyblockTemplate() {
+        return this.skyblockTemplate;
     }
 
-    public SkyblockConfig getLobbyConfig() {
-        if (this.lobby != null && !lobby.isEmpty()) {
-            return SkyblockConfig.getSkyblockConfig(this.lobby);
-        }
-        return getSkyblockConfig();
+    public SkyblockTemplate getLobbyTemplate() {
+        return this.lobbyTemplate;
     }
 
+    // At startup the default skyblocks are copied and the config is written back with any new options
     public static TattersConfig loadConfig() {
-        SkyblockConfig.copySkyblocks();
-
         TattersConfig result = new TattersConfig();
         final Path file = getConfigFile(CONFIG_FILE_NAME);
         if (Files.exists(file)) {
             result = readFile(file, TattersConfig.class);
         }
-        SkyblockConfig.loadSkyblocks();
-        result.validate();
+        SkyblockConfig.copySkyblocks(result.loadThreads);
+        result.validate(SkyblockConfig.loadSkyblocks(result.loadThreads, true));
         writeFile(file, result);
         return result;
     }
 
-    public static boolean reload() {
+    // Reloads never write the files back, so the config watcher does not see its own changes.
+    // Unchanged skyblock files are reused from the current config when reuse is true.
+    private static TattersConfig readConfig(final boolean reuse) {
+        TattersConfig result = new TattersConfig();
+        final Path file = getConfigFile(CONFIG_FILE_NAME);
+        if (Files.exists(file)) {
+            result = readFile(file, TattersConfig.class);
+        }
+        result.validate(SkyblockConfig.loadSkyblocks(result.loadThreads, reuse));
+        return result;
+    }
+
+    public static synchronized boolean reload() {
         final Path file = getConfigFile(CONFIG_FILE_NAME);
+        final long start = System.nanoTime();
         try {
-            CONFIG = loadConfig();
+            publish(readConfig(false));
+            TattersMetrics.METRICS.reload.record(System.nanoTime() - start);
             return true;
         } catch (Exception e) {
+            TattersMetrics.METRICS.reloadFailed.increment();
             log.error("Error reloading: " + file, e);
             return false;
         }
     }
+
+    // Called from the config watcher thread
+    static synchronized void reloadInBackground() {
+        final Path file = getConfigFile(CONFIG_FILE_NAME);
+        final long start = System.nanoTime();
+        try {
+            publish(readConfig(true));
+            TattersMetrics.METRICS.reload.record(System.nanoTime() - start);
+            log.info("Reloaded " + file);
+        } catch (Exception e) {
+            TattersMetrics.METRICS.reloadFailed.increment();
+            log.error("Not reloading, keeping the current config: " + file, e);
+        }
+    }
+
+    // Everything is parsed and validated before the server thread can see it
+    private static void publish(final TattersConfig config) {
+        SkyblockConfig.publish(config.skyblocks);
+        CONFIG.set(config);
+        ConfigWatcher.setEnabled(config.watchConfig);
+    }
 }
\ No newline at end of file
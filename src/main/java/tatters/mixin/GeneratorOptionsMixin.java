@@ -25,6 +25,7 @@ import java.util.Properties;
 import java.util.Random;
 
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
@@ -38,15 +39,26 @@ import net.minecraft.world.biome.Biome;
 import net.minecraft.world.dimension.DimensionOptions;
 import net.minecraft.world.dimension.DimensionType;
 import net.minecraft.world.gen.GeneratorOptions;
+import net.minecraft.world.gen.chunk.ChunkGenerator;
 import net.minecraft.world.gen.chunk.ChunkGeneratorSettings;
 import net.minecraft.world.gen.chunk.FlatChunkGeneratorConfig;
 import net.minecraft.world.gen.chunk.StructuresConfig;
 import tatters.TattersMain;
 import tatters.common.TattersChunkGenerator;
 
-// TODO add void nether/end handling
 @Mixin(GeneratorOptions.class)
-public class GeneratorOptionsMixin {
+public abstract class GeneratorOptionsMixin {
+
+    @Shadow
+    public abstract ChunkGenerator getChunkGenerator();
+
+    // Still a flat world for the sky and horizon rendering now the generator no longer extends FlatChunkGenerator
+    @Inject(method = "isFlatWorld", at = @At("HEAD"), cancellable = true)
+    private void tatters_isFlatWorld(final CallbackInfoReturnable<Boolean> ci) {
+        if (getChunkGenerator() instanceof TattersChunkGenerator) {
+            ci.setReturnValue(true);
+        }
+    }
 
     @Inject(method = "fromProperties", 
             at = @At("HEAD"), cancellable = true) 
@@ -82,7 +94,7 @@ public class GeneratorOptionsMixin {
         final Registry<DimensionType> dimensionTypes = dynamicRegistryManager.get(Registry.DIMENSION_TYPE_KEY);
         final Registry<Biome> biomeRegistry = dynamicRegistryManager.get(Registry.BIOME_KEY);
         final Registry<ChunkGeneratorSettings> noiseSettings = dynamicRegistryManager.get(Registry.NOISE_SETTINGS_WORLDGEN);
-        final SimpleRegistry<DimensionOptions> defaultDimensions = DimensionType.createDefaultDimensionOptions(dimensionTypes, biomeRegistry, noiseSettings, seed);
+        final SimpleRegistry<DimensionOptions> defaultDimensions = TattersChunkGenerator.createDefaultDimensionOptions(dimensionTypes, biomeRegistry, noiseSettings, seed);
         // TODO figure out a way to reliably start at the equivalent of this point in fromProperties()
         final StructuresConfig structuresConfig = new StructuresConfig(Optional.empty(), Collections.emptyMap());
         final FlatChunkGeneratorConfig config = new FlatChunkGeneratorConfig(structuresConfig, biomeRegistry);
@@ -0,0 +1,58 @@
+/*
+ * This file is part of Tatters.
+ * Copyright (c) 2021, warjort and others, All rights reserved.
+ *
+ * Tatters is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tatters is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Tatters.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package tatters.mixin;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+
+import it.unimi.dsi.fastutil.longs.LongList;
+import net.minecraft.server.world.ServerLightingProvider;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.chunk.ChunkProvider;
+import net.minecraft.world.chunk.light.LightingProvider;
+import tatters.common.TattersLighting;
+
+@Mixin(ServerLightingProvider.class)
+public abstract class ServerLightingProviderMixin extends LightingProvider implements TattersLighting {
+
+    private ServerLightingProviderMixin(final ChunkProvider chunkProvider, final boolean hasBlockLight, final boolean hasSkyLight) {
+        super(chunkProvider, hasBlockLight, hasSkyLight);
+    }
+
+    @Shadow
+    protected abstract void enqueue(int x, int z, ServerLightingProvider.Stage stage, Runnable task);
+
+    @Override
+    public void tatters_checkBlocks(final int chunkX, final int chunkZ, final LongList positions) {
+        enqueue(chunkX, chunkZ, ServerLightingProvider.Stage.POST_UPDATE, () -> {
+            // The same work as the tasks queued by checkBlock(), run on the light thread
+            for (int i = 0; i < positions.size(); ++i) {
+                super.checkBlock(BlockPos.fromLong(positions.getLong(i)));
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> tatters_whenLightUpdated(final int chunkX, final int chunkZ) {
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        enqueue(chunkX, chunkZ, ServerLightingProvider.Stage.POST_UPDATE, () -> result.complete(null));
+        return result;
+    }
+}
\ No newline at end of file
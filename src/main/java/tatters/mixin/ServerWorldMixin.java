@@ -17,26 +17,45 @@
  */
 package tatters.mixin;
 
+import java.util.function.BooleanSupplier;
+
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
-import tatters.TattersMain;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.chunk.WorldChunk;
 import tatters.common.Skyblocks;
+import tatters.common.TattersContext;
+import tatters.common.TattersWorld;
 
 @Mixin(ServerWorld.class)
-public class ServerWorldMixin {
+public class ServerWorldMixin implements TattersWorld {
 
     @Final
     @Shadow
     private boolean inEntityTick;
 
+    @Unique
+    private TattersContext tatters_context = null;
+
+    @Override
+    public TattersContext tatters_getContext() {
+        if (this.tatters_context == null) {
+            this.tatters_context = new TattersContext((ServerWorld) (Object) this);
+        }
+        return this.tatters_context;
+    }
+
     @Inject(method = "loadEntityUnchecked", at = @At("TAIL"))
     private void tatters_onServerEntityLoad(final Entity entity, final CallbackInfo ci) {
         if (this.inEntityTick) {
@@ -45,12 +64,44 @@ public class ServerWorldMixin {
         if (entity instanceof ServerPlayerEntity == false)
             return;
         final ServerPlayerEntity player = (ServerPlayerEntity) entity;
-        final ServerWorld world = (ServerWorld) (Object) this;
-        if (!TattersMain.isTattersWorld(world))
+        if (!tatters_getContext().isTattersWorld())
             return;
+        final ServerWorld world = (ServerWorld) (Object) this;
         tatters_onServerPlayerLoad(player, world);
     }
 
+    // Idle islands are throttled, players and whatever they are riding are always ticked
+    @Inject(method = "tickEntity(Lnet/minecraft/entity/Entity;)V", at = @At("HEAD"), cancellable = true)
+    private void tatters_onTickEntity(final Entity entity, final CallbackInfo ci) {
+        if (entity instanceof PlayerEntity || entity.hasPlayerRider())
+            return;
+        if (!tatters_getContext().shouldTick(MathHelper.floor(entity.getX()), MathHelper.floor(entity.getZ()))) {
+            ci.cancel();
+        }
+    }
+
+    // Random ticks, plus the weather effects that happen in the same place
+    @Inject(method = "tickChunk", at = @At("HEAD"), cancellable = true)
+    private void tatters_onTickChunk(final WorldChunk chunk, final int randomTickSpeed, final CallbackInfo ci) {
+        final ChunkPos chunkPos = chunk.getPos();
+        if (!tatters_getContext().shouldTick(chunkPos.getStartX() + 8, chunkPos.getStartZ() + 8)) {
+            ci.cancel();
+        }
+    }
+
+    @Inject(method = "tick", at = @At("TAIL"))
+    private void tatters_onServerWorldTick(final BooleanSupplier shouldKeepTicking, final CallbackInfo ci) {
+        final TattersContext context = tatters_getContext();
+        if (!context.isTattersWorld())
+            return;
+        context.captureConfig();
+        tatters_tickSkyblocks((ServerWorld) (Object) this);
+    }
+
+    private void tatters_tickSkyblocks(final ServerWorld world) {
+        Skyblocks.onServerWorldTick(world);
+    }
+
     // Separate method to try to avoid the config referenced in Skyblocks getting loaded when not needed
     private void tatters_onServerPlayerLoad(final ServerPlayerEntity player, final ServerWorld world) {
         Skyblocks.onServerPlayerLoad(player, world);
@@ -0,0 +1,45 @@
+/*
+ * This file is part of Tatters.
+ * Copyright (c) 2021, warjort and others, All rights reserved.
+ *
+ * Tatters is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tatters is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Tatters.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package tatters.mixin;
+
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Redirect;
+
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Tickable;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import tatters.common.TattersContext;
+
+@Mixin(World.class)
+public class WorldMixin {
+
+    // Block entities in idle islands are throttled
+    @Redirect(method = "tickBlockEntities", at = @At(value = "INVOKE", target = "Lnet/minecraft/util/Tickable;tick()V"))
+    private void tatters_tickBlockEntity(final Tickable tickable) {
+        final Object world = this;
+        if (world instanceof ServerWorld && tickable instanceof BlockEntity) {
+            final BlockPos pos = ((BlockEntity) tickable).getPos();
+            if (!TattersContext.get((ServerWorld) world).shouldTick(pos.getX(), pos.getZ()))
+                return;
+        }
+        tickable.tick();
+    }
+}
\ No newline at end of file
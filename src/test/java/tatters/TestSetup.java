@@ -0,0 +1,51 @@
+/*
+ * This file is part of Tatters.
+ * Copyright (c) 2021, warjort and others, All rights reserved.
+ *
+ * Tatters is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tatters is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Tatters.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package tatters;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import net.minecraft.Bootstrap;
+
+// The same as the benchmarks' setup: the minecraft registries plus a config directory with the default skyblock
+public class TestSetup {
+
+    private static boolean done = false;
+
+    public static synchronized void setUp() {
+        if (done)
+            return;
+        final String configDir = System.getProperty(TattersMain.MOD_ID + ".configDir");
+        if (configDir == null)
+            throw new IllegalStateException("No " + TattersMain.MOD_ID + ".configDir, run the tests with gradlew test");
+        Bootstrap.initialize();
+        try {
+            final Path skyblocks = Paths.get(configDir).resolve("skyblocks");
+            Files.createDirectories(skyblocks);
+            try (InputStream input = TestSetup.class.getResourceAsStream("/assets/tatters/skyblocks/default.json")) {
+                Files.copy(input, skyblocks.resolve("default.json"), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Error setting up: " + configDir, e);
+        }
+        done = true;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,79 @@
+/*
+ * This file is part of Tatters.
+ * Copyright (c) 2021, warjort and others, All rights reserved.
+ *
+ * Tatters is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tatters is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Tatters.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package tatters.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+// Prefix counts have to hold for names using the highest chars, including surrogate pairs
+public class SkyblockNameIndexTest {
+
+    private static SkyblockNameIndex index(final String... names) {
+        final SkyblockNameIndex result = new SkyblockNameIndex();
+        for (String name : names) {
+            result.put(UUID.randomUUID(), name);
+        }
+        return result;
+    }
+
+    @Test
+    public void countsNamesStartingWithPrefix() {
+        final SkyblockNameIndex names = index("alice", "Alex", "bob", "al");
+        assertEquals(3, names.count("AL"));
+        assertEquals(1, names.count("b"));
+        assertEquals(0, names.count("c"));
+        assertEquals(4, names.count(""));
+    }
+
+    @Test
+    public void countsNamesAfterTheHighestChar() {
+        final SkyblockNameIndex names = index("a", "a\uffff", "a\uffffb", "b");
+        assertEquals(2, names.count("a\uffff"));
+        assertEquals(3, names.count("a"));
+    }
+
+    @Test
+    public void countsSupplementaryNames() {
+        // U+1F600 and U+1F601 share the high surrogate
+        final SkyblockNameIndex names = index("\ud83d\ude00x", "\ud83d\ude00y", "\ud83d\ude01");
+        assertEquals(2, names.count("\ud83d\ude00"));
+        assertEquals(3, names.count("\ud83d"));
+    }
+
+    @Test
+    public void listsInOrderAfterChanges() {
+        final UUID bob = UUID.randomUUID();
+        final SkyblockNameIndex names = index("carol", "alice");
+        names.put(bob, "bob");
+        assertEquals("bob", names.list(1, 1).get(0).getName());
+        names.remove(bob);
+        assertEquals("carol", names.list(1, 1).get(0).getName());
+        assertNull(names.get("bob"));
+    }
+
+    @Test
+    public void nextPrefixSkipsTheHighestChar() {
+        assertEquals("b", SkyblockNameIndex.nextPrefix("a\uffff"));
+        assertNull(SkyblockNameIndex.nextPrefix("\uffff"));
+        assertNull(SkyblockNameIndex.nextPrefix(""));
+    }
+}
\ No newline at end of file
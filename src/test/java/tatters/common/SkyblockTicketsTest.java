@@ -0,0 +1,64 @@
+/*
+ * This file is part of Tatters.
+ * Copyright (c) 2021, warjort and others, All rights reserved.
+ *
+ * Tatters is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tatters is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Tatters.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package tatters.common;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+
+// Idleness has to come from membership, with islandTicketRadius=0 no island ever holds a ticket
+public class SkyblockTicketsTest {
+
+    private static final int IDLE_TICKS = 300 * 20;
+
+    private final UUID owner = UUID.randomUUID();
+
+    private final long cell = 42L;
+
+    @Test
+    public void onlineMemberWithoutTicketIsNotIdle() {
+        final SkyblockTickets tickets = new SkyblockTickets(null);
+        final LongSet activeCells = new LongOpenHashSet();
+        tickets.markActive(this.owner, this.cell, 100000, activeCells);
+        assertFalse(tickets.isActive(this.owner));
+        assertFalse(tickets.isIdle(this.owner, this.cell, 100000, IDLE_TICKS, activeCells));
+    }
+
+    @Test
+    public void idleAfterMembersLeave() {
+        final SkyblockTickets tickets = new SkyblockTickets(null);
+        tickets.markActive(this.owner, this.cell, 1000, new LongOpenHashSet());
+        final LongSet nobody = new LongOpenHashSet();
+        assertFalse(tickets.isIdle(this.owner, this.cell, 1000 + IDLE_TICKS, IDLE_TICKS, nobody));
+        assertTrue(tickets.isIdle(this.owner, this.cell, 1001 + IDLE_TICKS, IDLE_TICKS, nobody));
+    }
+
+    @Test
+    public void visitedCellIsNotIdle() {
+        final SkyblockTickets tickets = new SkyblockTickets(null);
+        final LongSet activeCells = new LongOpenHashSet();
+        activeCells.add(this.cell);
+        assertFalse(tickets.isIdle(this.owner, this.cell, 100000, IDLE_TICKS, activeCells));
+    }
+}
\ No newline at end of file
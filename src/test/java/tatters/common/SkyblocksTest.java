@@ -0,0 +1,69 @@
+/*
+ * This file is part of Tatters.
+ * Copyright (c) 2021, warjort and others, All rights reserved.
+ *
+ * Tatters is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tatters is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Tatters.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package tatters.common;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.util.math.ChunkPos;
+import tatters.TestSetup;
+import tatters.config.SkyblockConfig;
+import tatters.config.SkyblockTemplate;
+
+public class SkyblocksTest {
+
+    private static SkyblockTemplate template;
+
+    @BeforeAll
+    public static void setUp() {
+        TestSetup.setUp();
+        // Only a spawn point, so the job finishes without needing a world
+        final SkyblockConfig config = new SkyblockConfig();
+        config.name = "empty";
+        config.layers = Collections.singletonList(Collections.singletonList("!"));
+        template = config.compile();
+    }
+
+    // An autosave while a skyblock is being built lists its cell for erasing,
+    // finishing the job has to get that written again before the next load
+    @Test
+    public void finishedJobIsNotErasedAfterReload() {
+        final Skyblocks skyblocks = new Skyblocks(4);
+        final SkyblockJob job = skyblocks.createSkyblockAsync(UUID.randomUUID(), "player", template);
+        final long cell = skyblocks.getCell(job.getSkyblock());
+        final int index = SkyblockPos.getIndex(ChunkPos.getPackedX(cell), ChunkPos.getPackedZ(cell));
+        final CompoundTag autosave = skyblocks.toTag(new CompoundTag());
+        assertArrayEquals(new int[] { index }, autosave.getIntArray("erasing"));
+        skyblocks.setDirty(false);
+
+        skyblocks.runJobs(Integer.MAX_VALUE, System.nanoTime() + 1000000000L);
+        assertTrue(job.getFuture().isDone());
+        assertTrue(skyblocks.isDirty());
+
+        final Skyblocks reloaded = new Skyblocks(4);
+        reloaded.fromTag(skyblocks.toTag(new CompoundTag()));
+        assertArrayEquals(new int[0], reloaded.toTag(new CompoundTag()).getIntArray("erasing"));
+    }
+}
\ No newline at end of file